@@ -0,0 +1,214 @@
+/**
+ * BatchRender renders .params files, as FractViewer's Save Params
+ * writes them, to PNGs without a window, so stills can be made on a
+ * headless server. Each file becomes a PNG of the same name, in the
+ * -out directory if one is given, next to the file if not. Files are
+ * rendered -workers at a time, and each render is split over the
+ * render threads as usual. The palette isn't in a .params file, it is
+ * picked with -palette (1 is the full spectrum FractViewer starts with).
+ * Run with: java -Djava.awt.headless=true BatchRender [-workers n]
+ *           [-threads n] [-palette n] [-aa samples] [-out dir] file.params ...
+ */
+
+import java.awt.image.*;
+import java.io.*;
+import java.math.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+
+public class BatchRender implements FractalViewer
+{
+    public static final int DEFAULT_WORKERS = 2; // files rendered at once
+
+    /**
+     * Params is what a .params file holds.
+     */
+    public static class Params
+    {
+        int width, height, iterations, colorRepeats, colorMode, power;
+        BigDecimal fx, fy; // the center, at full precision
+        double fz, juliaX, juliaY;
+        boolean isMandlebrot;
+    }
+
+    public static void main(String args[])
+    {
+        System.setProperty("java.awt.headless", "true");
+        int workers = DEFAULT_WORKERS;
+        int palette = 1;
+        int samples = 1;
+        File outDir = null;
+        List<File> files = new ArrayList<File>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-workers")) {
+                    workers = Math.max(1, Integer.parseInt(args[++i]));
+                } else if (args[i].equals("-threads")) {
+                    Fractal.setRenderThreads(Integer.parseInt(args[++i]));
+                } else if (args[i].equals("-palette")) {
+                    palette = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-aa")) {
+                    samples = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-out")) {
+                    outDir = new File(args[++i]);
+                } else {
+                    files.add(new File(args[i]));
+                }
+            }
+        } catch (RuntimeException ex) {
+            files.clear(); // a bad or missing option value
+        }
+        GradientManager gradients = new GradientManager();
+        if (files.isEmpty() || palette < 1 || palette > gradients.getSize()) {
+            System.out.println("usage: java -Djava.awt.headless=true BatchRender [-workers n]"
+                + " [-threads n] [-palette 1-" + gradients.getSize() + "] [-aa samples]"
+                + " [-out dir] file.params ...");
+            System.exit(2);
+        }
+        if (outDir != null && !outDir.isDirectory() && !outDir.mkdirs()) {
+            System.out.println("can't make " + outDir);
+            System.exit(2);
+        }
+        final int [] colors = gradients.getGradient(palette);
+        final int aa = samples;
+        final File dir = outDir;
+        final BatchRender viewer = new BatchRender();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < files.size(); i++) {
+            final File f = files.get(i);
+            results.add(pool.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    return viewer.render(f, dir, colors, aa);
+                }
+            }));
+        }
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                System.out.println(results.get(i).get());
+            } catch (ExecutionException ex) {
+                failed++;
+                System.out.println(files.get(i) + ": " + ex.getCause());
+            } catch (InterruptedException ex) {
+                failed++;
+            }
+        }
+        pool.shutdown();
+        System.out.println((files.size() - failed) + " rendered, " + failed + " failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * render renders one .params file to a PNG.
+     *
+     * @param dir the directory to write to, null for next to the file
+     * @param colors the color set to use
+     * @param samples most samples per edge pixel, 1 for no anti-aliasing
+     * @return a line saying what was written
+     * @throws IOException if the file can't be read or the PNG written
+     */
+    public String render(File f, File dir, int [] colors, int samples) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        Params p = readParams(f);
+        Fractal fractal = new Fractal(p.width, p.height, p.fx.doubleValue(),
+            p.fy.doubleValue(), p.fz, colors, p.iterations, p.colorRepeats, p.colorMode,
+            p.power, p.isMandlebrot, p.juliaX, p.juliaY, false, this);
+        fractal.antiAliasSamples = Math.max(1, Math.min(Fractal.AA_MAX_SAMPLES, samples));
+        // the center at full precision, a double runs out past 1e14
+        fractal.redraw(p.width, p.height, p.fx, p.fy, p.iterations, p.fz);
+        BufferedImage bf = new BufferedImage(p.width, p.height, BufferedImage.TYPE_INT_RGB);
+        bf.setRGB(0, 0, p.width, p.height, fractal.getPix(), 0, p.width);
+        String name = f.getName();
+        if (name.endsWith(".params")) name = name.substring(0, name.length() - 7);
+        File out = new File(dir != null ? dir : f.getAbsoluteFile().getParentFile(), name + ".png");
+        FractalEvents.PngWrite event = new FractalEvents.PngWrite();
+        event.begin();
+        if (!ImageIO.write(bf, "png", out)) throw new IOException("no png encoder");
+        if (event.shouldCommit()) {
+            event.width = p.width;
+            event.height = p.height;
+            event.power = p.power;
+            event.iterations = fractal.getIterations();
+            event.pixels = (long)p.width*p.height;
+            event.file = out.getPath();
+            event.bytes = out.length();
+            event.commit();
+        }
+        return f + " -> " + out + ", " + p.width + "x" + p.height + ", "
+            + fractal.getIterations() + " iterations, "
+            + (System.currentTimeMillis() - start) + " ms";
+    }
+
+    /**
+     * readParams reads a .params file: a label line ("width:") followed
+     * by its value line, for each of width, height, fx, fy, fz,
+     * iterations, colorrepeats, colormode, fpower, ismandlebrot, juliaX
+     * and juliaY. Other lines are skipped.
+     *
+     * @throws IOException if the file can't be read, or a value is
+     * missing or not a number
+     */
+    public static Params readParams(File f) throws IOException
+    {
+        HashMap<String, String> values = new HashMap<String, String>();
+        BufferedReader in = new BufferedReader(new FileReader(f));
+        try {
+            String label = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0) continue;
+                if (line.endsWith(":")) {
+                    label = line.substring(0, line.length() - 1).toLowerCase();
+                } else if (label != null) {
+                    values.put(label, line);
+                    label = null;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        Params p = new Params();
+        try {
+            p.width = Integer.parseInt(value(values, "width", f));
+            p.height = Integer.parseInt(value(values, "height", f));
+            p.fx = new BigDecimal(value(values, "fx", f));
+            p.fy = new BigDecimal(value(values, "fy", f));
+            p.fz = Double.parseDouble(value(values, "fz", f));
+            p.iterations = Integer.parseInt(value(values, "iterations", f));
+            p.colorRepeats = Integer.parseInt(value(values, "colorrepeats", f));
+            p.colorMode = Integer.parseInt(value(values, "colormode", f));
+            p.power = Integer.parseInt(value(values, "fpower", f));
+            p.isMandlebrot = Boolean.valueOf(value(values, "ismandlebrot", f)).booleanValue();
+            p.juliaX = Double.parseDouble(value(values, "juliax", f));
+            p.juliaY = Double.parseDouble(value(values, "juliay", f));
+        } catch (NumberFormatException ex) {
+            throw new IOException(f + ": " + ex.getMessage());
+        }
+        if (p.width < 1 || p.height < 1 || p.iterations < 1 || p.power < 2 || !(p.fz > 0)) {
+            throw new IOException(f + ": size, iterations, power or zoom out of range");
+        }
+        return p;
+    }
+
+    private static String value(HashMap<String, String> values, String name, File f) throws IOException
+    {
+        String v = values.get(name);
+        if (v == null) throw new IOException(f + ": no " + name);
+        return v;
+    }
+
+    public Object getFrame() {
+        return null;
+    }
+
+    public String getFrameTitle() {
+        return "BatchRender";
+    }
+
+    public void notifyMe() {
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * DistanceKernel runs the escape-time loop while carrying the
+ * derivative dz of z alongside it (by c for Mandlebrot, by the
+ * starting z for Julia), and gives escaped points the exterior
+ * distance estimate
+ *
+ *   d = |z| ln|z| / (2 |dz|)
+ *
+ * which is about the distance from the point to the set, from
+ * below. The z steps are worked out in the same order as the
+ * EscapeKernel for the power, so points get the same counts.
+ * The estimate is taken once |z|^2 passes BAILOUT, a few steps past
+ * the usual escape, since it only holds for large |z|.
+ */
+
+public class DistanceKernel
+{
+    public static final double BAILOUT = 1e10; // squared |z| the estimate is taken at
+    public static final int EXTRA_STEPS = 8; // most steps past the escape to get there
+
+    private final int power;
+    private final boolean isMandlebrot;
+
+    /**
+     * @param power the power to raise z to (>=2)
+     * @param isMandlebrot true for Mandlebrot, false for Julia set.
+     */
+    public DistanceKernel(int power, boolean isMandlebrot)
+    {
+        this.power = power;
+        this.isMandlebrot = isMandlebrot;
+    }
+
+    /**
+     * iterate runs the loop until |z| > 2 or numIter iterations.
+     *
+     * @param zx starting real part of z
+     * @param zy starting imaginary part of z
+     * @param cx real part of the constant added each iteration
+     * @param cy imaginary part of the constant added each iteration
+     * @param numIter the iteration cap
+     * @param o receives the final z and the distance estimate (0 if
+     * the point never escaped), and holds the periodicity check and
+     * the scratch z and dz are kept in
+     * @return the iteration the orbit escaped at, numIter if it never did
+     */
+    public int iterate(double zx, double zy, double cx, double cy,
+                       int numIter, Fractal.Orbit o)
+    {
+        // r[0..1] is z, r[2..3] is dz
+        double [] r = o.scratch;
+        r[0] = zx;
+        r[1] = zy;
+        r[2] = isMandlebrot ? 0 : 1; // dz/dc starts at 0, dz/dz0 at 1
+        r[3] = 0;
+        int i;
+        o.startCycleCheck(zx, zy);
+        for (i=0 ; i < numIter; i++) {
+            step(r, cx, cy);
+            if (r[0]*r[0] + r[1]*r[1] > 4) break; // the "escape value"
+            if (o.checkPeriod && o.cycled(r[0], r[1])) {
+                o.skipped += numIter - i - 1; // cycling, will never escape
+                i = numIter;
+                break;
+            }
+        }
+        o.zx = r[0];
+        o.zy = r[1];
+        o.distance = 0;
+        if (i >= numIter) return i;
+        double mag = r[0]*r[0] + r[1]*r[1];
+        double dmag = r[2]*r[2] + r[3]*r[3];
+        for (int k = 0; k < EXTRA_STEPS && mag < BAILOUT; k++) {
+            double px = r[0], py = r[1], pdx = r[2], pdy = r[3];
+            step(r, cx, cy);
+            double m = r[0]*r[0] + r[1]*r[1];
+            double dm = r[2]*r[2] + r[3]*r[3];
+            if (Double.isInfinite(m) || Double.isInfinite(dm) || Double.isNaN(m + dm)) {
+                // high powers overshoot, keep the last finite step
+                r[0] = px;
+                r[1] = py;
+                r[2] = pdx;
+                r[3] = pdy;
+                break;
+            }
+            mag = m;
+            dmag = dm;
+        }
+        if (dmag > 0) {
+            o.distance = Math.sqrt(mag) * 0.5*Math.log(mag) / (2*Math.sqrt(dmag));
+        }
+        return i;
+    }
+
+    /**
+     * step takes z in r[0..1] to z^power + c and dz in r[2..3] to
+     * power z^(power-1) dz (+ 1 for Mandlebrot).
+     */
+    private void step(double [] r, double cx, double cy)
+    {
+        double zx = r[0];
+        double zy = r[1];
+        double dx = r[2];
+        double dy = r[3];
+        double add = isMandlebrot ? 1 : 0;
+        double wx, wy; // z^(power-1)
+        switch (power) {
+            case 2:
+                wx = zx;
+                wy = zy;
+                double tempzx = zx*zx - zy*zy;
+                r[1] = zx*zy + zy*zx + cy;
+                r[0] = tempzx + cx;
+                break;
+            case 3:
+                wx = zx*zx - zy*zy;
+                wy = zx*zy + zy*zx;
+                r[0] = wx*zx - wy*zy + cx;
+                r[1] = wx*zy + wy*zx + cy;
+                break;
+            case 4:
+                double x2 = zx*zx - zy*zy;
+                double y2 = zx*zy + zy*zx;
+                wx = x2*zx - y2*zy;
+                wy = x2*zy + y2*zx;
+                r[0] = wx*zx - wy*zy + cx;
+                r[1] = wx*zy + wy*zx + cy;
+                break;
+            default:
+                // z^power as EscapeKernel.RepeatedSquaring does it,
+                // z^(power-1) the same way on the side
+                pow(r, zx, zy, power);
+                double px = r[0];
+                double py = r[1];
+                pow(r, zx, zy, power - 1);
+                wx = r[0];
+                wy = r[1];
+                r[0] = px + cx;
+                r[1] = py + cy;
+        }
+        double tx = wx*dx - wy*dy;
+        double ty = wx*dy + wy*dx;
+        r[2] = power*tx + add;
+        r[3] = power*ty;
+    }
+
+    /**
+     * pow raises z to e by repeated squaring into r[0..1].
+     */
+    private static void pow(double [] r, double zx, double zy, int e)
+    {
+        double sx = zx; // z^(2^k)
+        double sy = zy;
+        double rx = 0;
+        double ry = 0;
+        boolean first = true;
+        while (true) {
+            if ((e & 1) != 0) {
+                if (first) {
+                    rx = sx;
+                    ry = sy;
+                    first = false;
+                } else {
+                    double temprx = rx*sx - ry*sy;
+                    ry = rx*sy + ry*sx;
+                    rx = temprx;
+                }
+            }
+            e >>>= 1;
+            if (e == 0) break;
+            double tempsx = sx*sx - sy*sy;
+            sy = sx*sy + sy*sx;
+            sx = tempsx;
+        }
+        r[0] = rx;
+        r[1] = ry;
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * EscapeKernel runs the escape-time loop z = z^power + c for one point.
+ * Fractal picks a kernel for its power when a render starts, so the
+ * inner loop never has to walk a generic power-1 multiply loop.
+ * z^2, z^3 and z^4 are unrolled in the same order as the old loop
+ * (so they give identical results), higher powers raise z by
+ * repeated squaring.
+ */
+
+public abstract class EscapeKernel
+{
+    /**
+     * iterate runs the loop until |z| > 2 or numIter iterations.
+     *
+     * @param zx starting real part of z
+     * @param zy starting imaginary part of z
+     * @param cx real part of the constant added each iteration
+     * @param cy imaginary part of the constant added each iteration
+     * @param numIter the iteration cap
+     * @param o receives the final z, and holds the periodicity check
+     * @return the iteration the orbit escaped at, numIter if it never did
+     */
+    public abstract int iterate(double zx, double zy, double cx, double cy,
+                                int numIter, Fractal.Orbit o);
+
+    /**
+     * @return the number of complex multiplies one iteration costs
+     */
+    public abstract int getMultiplies();
+
+    /**
+     * forPower returns the fastest kernel for a fractal power.
+     *
+     * @param power the power to raise z to (>=2)
+     */
+    public static EscapeKernel forPower(int power)
+    {
+        switch (power) {
+            case 2: return new Square();
+            case 3: return new Cube();
+            case 4: return new Quartic();
+            default: return new RepeatedSquaring(power);
+        }
+    }
+
+    /**
+     * z^2 + c
+     */
+    public static class Square extends EscapeKernel
+    {
+        public int iterate(double zx, double zy, double cx, double cy,
+                           int numIter, Fractal.Orbit o)
+        {
+            int i;
+            o.startCycleCheck(zx, zy);
+            for (i=0 ; i < numIter; i++) {
+                double tempzx = zx*zx - zy*zy; //real part
+                zy = zx*zy + zy*zx + cy; // imag
+                zx = tempzx + cx;
+                if (zx*zx + zy*zy > 4) break; // the "escape value"
+                if (o.checkPeriod && o.cycled(zx, zy)) {
+                    o.skipped += numIter - i - 1; // cycling, will never escape
+                    i = numIter;
+                    break;
+                }
+            }
+            o.zx = zx;
+            o.zy = zy;
+            return i;
+        }
+
+        public int getMultiplies() {
+            return 1;
+        }
+    }
+
+    /**
+     * z^3 + c
+     */
+    public static class Cube extends EscapeKernel
+    {
+        public int iterate(double zx, double zy, double cx, double cy,
+                           int numIter, Fractal.Orbit o)
+        {
+            int i;
+            o.startCycleCheck(zx, zy);
+            for (i=0 ; i < numIter; i++) {
+                double x2 = zx*zx - zy*zy;
+                double y2 = zx*zy + zy*zx;
+                double tempzx = x2*zx - y2*zy;
+                zy = x2*zy + y2*zx + cy;
+                zx = tempzx + cx;
+                if (zx*zx + zy*zy > 4) break;
+                if (o.checkPeriod && o.cycled(zx, zy)) {
+                    o.skipped += numIter - i - 1;
+                    i = numIter;
+                    break;
+                }
+            }
+            o.zx = zx;
+            o.zy = zy;
+            return i;
+        }
+
+        public int getMultiplies() {
+            return 2;
+        }
+    }
+
+    /**
+     * z^4 + c, multiplied up one z at a time like the old loop
+     */
+    public static class Quartic extends EscapeKernel
+    {
+        public int iterate(double zx, double zy, double cx, double cy,
+                           int numIter, Fractal.Orbit o)
+        {
+            int i;
+            o.startCycleCheck(zx, zy);
+            for (i=0 ; i < numIter; i++) {
+                double x2 = zx*zx - zy*zy;
+                double y2 = zx*zy + zy*zx;
+                double x3 = x2*zx - y2*zy;
+                double y3 = x2*zy + y2*zx;
+                double tempzx = x3*zx - y3*zy;
+                zy = x3*zy + y3*zx + cy;
+                zx = tempzx + cx;
+                if (zx*zx + zy*zy > 4) break;
+                if (o.checkPeriod && o.cycled(zx, zy)) {
+                    o.skipped += numIter - i - 1;
+                    i = numIter;
+                    break;
+                }
+            }
+            o.zx = zx;
+            o.zy = zy;
+            return i;
+        }
+
+        public int getMultiplies() {
+            return 3;
+        }
+    }
+
+    /**
+     * z^power + c for any power, by binary exponentiation: square z
+     * once per bit of the power and multiply the squares of the set
+     * bits together. z^64 takes 6 complex multiplies instead of 63.
+     */
+    public static class RepeatedSquaring extends EscapeKernel
+    {
+        private final int power;
+
+        public RepeatedSquaring(int power)
+        {
+            this.power = power;
+        }
+
+        public int iterate(double zx, double zy, double cx, double cy,
+                           int numIter, Fractal.Orbit o)
+        {
+            int i;
+            o.startCycleCheck(zx, zy);
+            for (i=0 ; i < numIter; i++) {
+                double sx = zx; // z^(2^k)
+                double sy = zy;
+                double rx = 0; // product of the squares so far
+                double ry = 0;
+                boolean first = true;
+                int e = power;
+                while (true) {
+                    if ((e & 1) != 0) {
+                        if (first) {
+                            rx = sx;
+                            ry = sy;
+                            first = false;
+                        } else {
+                            double temprx = rx*sx - ry*sy;
+                            ry = rx*sy + ry*sx;
+                            rx = temprx;
+                        }
+                    }
+                    e >>>= 1;
+                    if (e == 0) break;
+                    double tempsx = sx*sx - sy*sy;
+                    sy = sx*sy + sy*sx;
+                    sx = tempsx;
+                }
+                zx = rx + cx;
+                zy = ry + cy;
+                if (zx*zx + zy*zy > 4) break;
+                if (o.checkPeriod && o.cycled(zx, zy)) {
+                    o.skipped += numIter - i - 1;
+                    i = numIter;
+                    break;
+                }
+            }
+            o.zx = zx;
+            o.zy = zy;
+            return i;
+        }
+
+        public int getMultiplies() {
+            // one square per bit below the top, one multiply per extra set bit
+            return 31 - Integer.numberOfLeadingZeros(power)
+                   + Integer.bitCount(power) - 1;
+        }
+    }
+
+    /**
+     * The original generic loop, multiplying z in power-1 times.
+     * Kept as the baseline for KernelBenchmark.
+     */
+    public static class Generic extends EscapeKernel
+    {
+        private final int power;
+
+        public Generic(int power)
+        {
+            this.power = power;
+        }
+
+        public int iterate(double zx, double zy, double cx, double cy,
+                           int numIter, Fractal.Orbit o)
+        {
+            int i;
+            o.startCycleCheck(zx, zy);
+            for (i=0 ; i < numIter; i++) {
+                double origZx = zx;
+                double origZy = zy;
+                for (int j=0; j < power-1; j++) {
+                    double tempzx = (zx*origZx)- (zy*origZy); //real part
+                    zy = zx*origZy + zy*origZx; // imag
+                    zx = tempzx;
+                }
+                zx += cx;
+                zy += cy;
+                if (zx*zx + zy*zy > 4) break;
+                if (o.checkPeriod && o.cycled(zx, zy)) {
+                    o.skipped += numIter - i - 1;
+                    i = numIter;
+                    break;
+                }
+            }
+            o.zx = zx;
+            o.zy = zy;
+            return i;
+        }
+
+        public int getMultiplies() {
+            return power - 1;
+        }
+    }
+}
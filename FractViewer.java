@@ -3,6 +3,7 @@ import java.awt.image.*;
 import javax.swing.*;
 import java.awt.event.*;
 import java.io.*;
+import java.math.*;
 import javax.imageio.*; // for encoding/saving Png's :) Thanx Java
 
 /**
@@ -16,15 +17,16 @@ import javax.imageio.*; // for encoding/saving Png's :) Thanx Java
 
 
 public class FractViewer extends JFrame implements FractalViewer,
-     ActionListener, MouseListener, MouseMotionListener 
+     ActionListener, MouseListener, MouseMotionListener, MouseWheelListener 
 {
     // JFrame parameters
     public static final String APP_TITLE = "Fractal_Viewer_1_4991 by Dave Kaplan";
     public static final int DEFAULT_WIDTH_SQUARE = 512;     //init size of Fractal Panel
     public static final int DEFAULT_HEIGHT_SQUARE = 512;    //  ''   ''
     public static final int DEFAULT_ITERS = 256;           
-    public static final int BUTTON_PANEL_HEIGHT = 480;
+    public static final int BUTTON_PANEL_HEIGHT = 528;
     public static final int BUTTON_PANEL_WIDTH = 120;    
+    public static final int STATUS_HEIGHT = 20;             //render stats under the Fractal
     public static final int ASPECT_MODE_SQUARE = 1;         //aspect ratio modes for
     public static final int ASPECT_MODE_LANDSCAPE = 2;      //zoom box
     public static final int ASPECT_MODE_LETTERBOX = 3;
@@ -38,24 +40,33 @@ public class FractViewer extends JFrame implements FractalViewer,
     private Container cp;              // ContentPane of this JFrame
     private bBox boundBox;             // zoom box
     private int rootX, rootY;          // corner MousePressed coords. of bBox 
+    private int panX, panY;            // MousePressed coords. when dragging to pan
     private Fractal myFractal;         // My Fractal
 
     // boolean toggles for fixed/free aspect, zoom (or not)/ julia pick mode /
     // corner or center zoom/Mandlebrot or JuliaSet/
-    // speed pass on or off/
+    // speed pass on or off/ subdivision on or off/ boundary trace on or off/
+    // distance estimate fill on or off/
+    // smooth colors on or off/
     // oldZoom remembers previous zoom state if some buttons are cancelled
     private boolean aspectFixed, zoom, selectJuliaMode, 
-                    cornerZoom, isMandlebrot, useSpeedPass, oldZoom;
+                    cornerZoom, isMandlebrot, useSpeedPass, useSubdivision,
+                    useBoundaryTrace, useDistanceFill, useSmoothColors, oldZoom;
 
     // Fractal parameters:
     // fixed width, height, store size in fixed aspect mode, fPower is the exponent
     // the complex # is raised to
     private int width,height, fixedWidth, fixedHeight, numIter,
                 colorRepeats, colorMode, fPower, palette;
+    private int antiAliasSamples = 1;  // samples per edge pixel, 1 for none
 
     // aspect is the 'current' aspect, same as fixedWidth/fixedHeight in fixed aspect mode
     private double aspect, fx, fy, fz, juliaX, juliaY;
 
+    // the center again at full precision, fx and fy run out of digits
+    // past a zoom of about 1e14
+    private BigDecimal bigFx, bigFy;
+
     // the INT_RGB gradient, supplied by the gradient manager's array list
     // (easy to add new gradient 'plugins' with minimal coding)
     private int [] colorSet;
@@ -66,11 +77,13 @@ public class FractViewer extends JFrame implements FractalViewer,
     private Button zoomButton, juliaButton, mandButton, powerButton , colorButton,
     sizeButton, cycleUpButton, cycleDownButton, iterationButton, paletteButton,
     speedButton, saveButton, aspectButton, zoomTypeButton, saveAnimButton, customDuotoneButton,
-    customGradientButton, saveParamsButton, pixelSchemeButton, innerColorButton;
+    customGradientButton, saveParamsButton, pixelSchemeButton, innerColorButton,
+    smoothButton, antiAliasButton;
 
     // Panels
     private Panel buttonPanel;
     private JPanel fractalPanel;          //panel the Fractal rests on
+    private Label statusLabel;            //what the last render cost
 
     // Gradient Manager
     private GradientManager grManager;    //supplier class for colorSets
@@ -94,6 +107,7 @@ public class FractViewer extends JFrame implements FractalViewer,
         oldZoom = false;
         buttonPanel = new Panel();
         fractalPanel = new JPanel();
+        statusLabel = new Label("");
         buttonPanel.setLayout (new BoxLayout(buttonPanel, BoxLayout.Y_AXIS));
         fractalPanel.setLayout ( null);
         zoomButton = new Button ("Toggle Zoom: Off");
@@ -136,6 +150,10 @@ public class FractViewer extends JFrame implements FractalViewer,
         pixelSchemeButton.addActionListener ( this );
         innerColorButton = new Button ("Inner color toggle");
         innerColorButton.addActionListener ( this );
+        smoothButton = new Button ("Smooth Colors: Off");
+        smoothButton.addActionListener ( this );
+        antiAliasButton = new Button ("Anti-alias: Off");
+        antiAliasButton.addActionListener ( this );
         
         // zoom box
         boundBox = new bBox ( 0, 0, 0, 0, Color.white );   //invisible box
@@ -152,6 +170,8 @@ public class FractViewer extends JFrame implements FractalViewer,
         aspect = (double)width/(double)height;
         fx = 0;    //origin of Gaussian plane
         fy = 0;    // ''    ''  ''        ''
+        bigFx = BigDecimal.ZERO;
+        bigFy = BigDecimal.ZERO;
         numIter = 256;
         colorRepeats = 2; // repeat colors twice through iteration bands
         colorMode = 1;  //no 'tweaks' on the colorset
@@ -192,6 +212,8 @@ public class FractViewer extends JFrame implements FractalViewer,
         buttonPanel.add ( cycleDownButton );
         buttonPanel.add ( pixelSchemeButton );
         buttonPanel.add ( innerColorButton );
+        buttonPanel.add ( smoothButton );
+        buttonPanel.add ( antiAliasButton );
 
 
 
@@ -205,16 +227,18 @@ public class FractViewer extends JFrame implements FractalViewer,
         validate();
         cp.add (fractalPanel);
         cp.add (buttonPanel);
+        cp.add (statusLabel);
         Insets i = getInsets();
-        //button panel on the left of Fractal panel
+        //button panel on the left of Fractal panel, status line under it
         fractalPanel.setBounds ( 20 + BUTTON_PANEL_WIDTH, 10, width, height );
+        statusLabel.setBounds ( 20 + BUTTON_PANEL_WIDTH, 10 + height, width, STATUS_HEIGHT );
         buttonPanel.setBounds ( 10, 10, BUTTON_PANEL_WIDTH,
             BUTTON_PANEL_HEIGHT );
         frameWidth = width + i.left + i.right + BUTTON_PANEL_WIDTH + 30;
-        if (height < BUTTON_PANEL_HEIGHT ){
+        if (height + STATUS_HEIGHT < BUTTON_PANEL_HEIGHT ){
             frameHeight = BUTTON_PANEL_HEIGHT + i.top + i.bottom + 20;
         } else
-            frameHeight = height + i.top + i.bottom+ 20;
+            frameHeight = height + STATUS_HEIGHT + i.top + i.bottom+ 20;
         setBounds (0, 0 , frameWidth ,frameHeight );
         setSize( frameWidth, frameHeight );
         validate();
@@ -240,8 +264,8 @@ public class FractViewer extends JFrame implements FractalViewer,
                 new PrintWriter(new FileWriter(filename));
 
          String temp = "FractView 1_498 parameters:" +
-         "\nwidth:\n" + width + "\nheight:\n" + height  +"\nfx:\n" + fx +
-         "\nfy:\n" + fy + "\nfz:\n" + fz + "\niterations:\n"+ numIter+ 
+         "\nwidth:\n" + width + "\nheight:\n" + height  +"\nfx:\n" + bigFx +
+         "\nfy:\n" + bigFy + "\nfz:\n" + fz + "\niterations:\n"+ numIter+ 
          "\ncolorrepeats:\n" + colorRepeats + "\ncolormode:\n"+ colorMode +
          "\nfpower:\n" + fPower + "\nismandlebrot:\n" + isMandlebrot +
          "\njuliaX:\n" + juliaX + "\njuliaY:\n" + juliaY;
@@ -261,25 +285,80 @@ public class FractViewer extends JFrame implements FractalViewer,
                                 colorRepeats, colorMode, fPower, 
                                 isMandlebrot, juliaX, juliaY, 
                                 useSpeedPass, this );         
-        myFractal.generateImage();
+        myFractal.setProgressive(true); // show coarse levels while zooming
+        // render in the background, the window comes up right away
+        render(new Runnable() {
+            public void run() {
+                myFractal.generateImage();
+            }
+        });
         fractalPanel.add( myFractal, BorderLayout.CENTER);
-        setIconImage(myFractal.getImage());
         setTitle (APP_TITLE);
         myFractal.addMouseListener ( this );
         myFractal.addMouseMotionListener ( this );
+        myFractal.addMouseWheelListener ( this );
     }
    
     //redrawFractal used for zooming or changing iterations when only
     //a few params change
      private void redrawFractal()
     {
-        myFractal.redraw(width, height, fx, fy, numIter, fz); 
+        final int w = width;
+        final int h = height;
+        final BigDecimal x = bigFx;
+        final BigDecimal y = bigFy;
+        final int iters = numIter;
+        final double z = fz;
+        render(new Runnable() {
+            public void run() {
+                myFractal.redraw(w, h, x, y, iters, z); 
+            }
+        });
         fractalPanel.setSize (new Dimension(width, height) );
         fractalPanel.add( myFractal, BorderLayout.CENTER);
-        setIconImage(myFractal.getImage());
         setTitle (APP_TITLE);
     }
 
+    //render hands a change to the Fractal's render thread, cancelling the
+    //render still going so the buttons and zoom box stay live, and puts
+    //the finished image on the window icon and its stats on the status line
+    private void render(final Runnable change)
+    {
+        myFractal.renderLater(new Runnable() {
+            public void run() {
+                change.run();
+                final int iters = myFractal.getIterations(); // auto may have picked it
+                final RenderStats stats = myFractal.getRenderStats();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        numIter = iters;
+                        if (stats != null) statusLabel.setText(stats.toString());
+                        if (myFractal.getImage() != null)
+                            setIconImage(myFractal.getImage());
+                    }
+                });
+            }
+        });
+    }
+
+    //writePng saves a frame as a PNG, recording a FractalEvents.PngWrite
+    private void writePng(BufferedImage bf, File f) throws IOException
+    {
+        FractalEvents.PngWrite event = new FractalEvents.PngWrite();
+        event.begin();
+        ImageIO.write(bf, "png", f );  //thanks for the encoder Java
+        if (event.shouldCommit()) {
+            event.width = bf.getWidth();
+            event.height = bf.getHeight();
+            event.power = fPower;
+            event.iterations = numIter;
+            event.pixels = (long)bf.getWidth()*bf.getHeight();
+            event.file = f.getPath();
+            event.bytes = f.length();
+            event.commit();
+        }
+    }
+
     /**
      * getFrame() lets the Fractal update the window title with 'percent done'
      * will switch to a progress bar dialog soon
@@ -363,6 +442,8 @@ public class FractViewer extends JFrame implements FractalViewer,
             aspect = (double)width/(double)height;
             fx = 0;    //origin of Gaussian plane
             fy = 0;    // ''    ''  ''        ''
+            bigFx = BigDecimal.ZERO;
+            bigFy = BigDecimal.ZERO;
             numIter = DEFAULT_ITERS;
             colorRepeats = 1; // no color repeats
             colorMode = 1;  //no 'tweaks' on the colorset
@@ -371,22 +452,61 @@ public class FractViewer extends JFrame implements FractalViewer,
             juliaY = 0;
             isMandlebrot = true;
             useSpeedPass = false;
+            useSubdivision = false;
+            useBoundaryTrace = false;
+            useDistanceFill = false;
             palette = 1;    //full spectrum
             juliaButton.setEnabled(true);
             isMandlebrot = true;             
-            myFractal.setMand ( 0, 0, fz, width, height, numIter);
+            speedButton.setLabel("Speed Pass: Off");
+            myFractal.setSpeedPass( false );
+            myFractal.setSubdivision( false );
+            myFractal.setBoundaryTrace( false );
+            myFractal.setDistanceFill( false );
+            myFractal.setAutoIterations( false );
+            iterationButton.setLabel("Set # of Iterations");
+            final double z = fz;
+            final int w = width;
+            final int h = height;
+            final int iters = numIter;
+            render(new Runnable() {
+                public void run() {
+                    myFractal.setMand ( 0, 0, z, w, h, iters);
+                }
+            });
             repack();
          } else
          //***********
          if ( e.getSource() == speedButton ) {
-             //toggle speed pass (only faster where large areas of adjacent pixels
-             //are the same color) Could be slower in some cases. For Next Zoom
-             useSpeedPass = !useSpeedPass;
-             if (useSpeedPass) 
-                speedButton.setLabel("Speed Pass: On");
-             else
+             //cycle speed pass (only faster where large areas of adjacent pixels
+             //are the same color) Could be slower in some cases, then
+             //subdivision (fills rectangles with one color border), then
+             //boundary tracing (fills inside traced band outlines), then
+             //distance fill (fills disks clear of the set), then off.
+             //For Next Zoom
+             if (useDistanceFill) {
+                useDistanceFill = false;
                 speedButton.setLabel("Speed Pass: Off");
+             } else if (useBoundaryTrace) {
+                useBoundaryTrace = false;
+                useDistanceFill = true;
+                speedButton.setLabel("Speed Pass: Distance");
+             } else if (useSubdivision) {
+                useSubdivision = false;
+                useBoundaryTrace = true;
+                speedButton.setLabel("Speed Pass: Trace");
+             } else if (useSpeedPass) {
+                useSpeedPass = false;
+                useSubdivision = true;
+                speedButton.setLabel("Speed Pass: Subdivide");
+             } else {
+                useSpeedPass = true;
+                speedButton.setLabel("Speed Pass: On");
+             }
              myFractal.setSpeedPass( useSpeedPass );
+             myFractal.setSubdivision( useSubdivision );
+             myFractal.setBoundaryTrace( useBoundaryTrace );
+             myFractal.setDistanceFill( useDistanceFill );
          } else   
          //***********
          if ( e.getSource() == powerButton ) {
@@ -406,6 +526,8 @@ public class FractViewer extends JFrame implements FractalViewer,
              if (!cancelled) {
                 fx = 0;
                 fy = 0;
+                bigFx = BigDecimal.ZERO;
+                bigFy = BigDecimal.ZERO;
                 fz = 1;
                 fPower = p;
                 juliaX = 0;
@@ -416,7 +538,14 @@ public class FractViewer extends JFrame implements FractalViewer,
                 juliaButton.setEnabled(true);
                 height= DEFAULT_HEIGHT_SQUARE;
                 width = DEFAULT_WIDTH_SQUARE;
-                myFractal.setPower( p, height, width );
+                final int power = p;
+                final int w = width;
+                final int h = height;
+                render(new Runnable() {
+                    public void run() {
+                        myFractal.setPower( power, h, w );
+                    }
+                });
              }
          } else
          //**********
@@ -427,15 +556,27 @@ public class FractViewer extends JFrame implements FractalViewer,
              do {
                  try {
                      String result = 
-                     JOptionPane.showInputDialog(this,"Enter # of Iterations (Int. 1-100000)",
+                     JOptionPane.showInputDialog(this,"Enter # of Iterations (Int. 1-100000, 0 = auto)",
                         APP_TITLE,3);
                      if ( result == null ) cancelled = true;
                      iters = Integer.parseInt((String)result);
-                 } catch (Exception ex) {}
-             } while ((iters < 1 || iters > 100000) && !cancelled);                      
-             if (!cancelled) {
+                 } catch (Exception ex) {iters = -1;}
+             } while ((iters < 0 || iters > 100000) && !cancelled);                      
+             if (!cancelled && iters == 0) {
+                 //auto: Fractal picks the iterations from the zoom every render
+                 myFractal.setAutoIterations(true);
+                 iterationButton.setLabel("Iterations: Auto");
+                 redrawFractal();
+             } else if (!cancelled) {
                  numIter = iters;
-                 myFractal.setIterations(iters);
+                 final int n = iters;
+                 myFractal.setAutoIterations(false);
+                 iterationButton.setLabel("Set # of Iterations");
+                 render(new Runnable() {
+                     public void run() {
+                         myFractal.setIterations(n);
+                     }
+                 });
                  repaint();
              }
          } else
@@ -462,13 +603,59 @@ public class FractViewer extends JFrame implements FractalViewer,
              } while (ps < 0 && !cancelled);                      
              if (!cancelled) {
                  //numIter = iters;
-                 myFractal.setPixelScheme(ps);
+                 final int scheme = ps;
+                 render(new Runnable() {
+                     public void run() {
+                         myFractal.setPixelScheme(scheme);
+                     }
+                 });
                  repaint();
              }
          } else
          //*********
          if ( e.getSource() == innerColorButton ) {
-                 myFractal.toggleInnerColors();
+                 render(new Runnable() {
+                     public void run() {
+                         myFractal.toggleInnerColors();
+                     }
+                 });
+                 repaint();
+         } else
+         //*********
+         if ( e.getSource() == smoothButton ) {
+                 //fractional iteration counts, the bands blend into each other
+                 useSmoothColors = !useSmoothColors;
+                 if (useSmoothColors)
+                     smoothButton.setLabel("Smooth Colors: On");
+                 else
+                     smoothButton.setLabel("Smooth Colors: Off");
+                 final boolean smooth = useSmoothColors;
+                 render(new Runnable() {
+                     public void run() {
+                         myFractal.setSmoothColors(smooth);
+                     }
+                 });
+                 repaint();
+         } else
+         //***********
+         if ( e.getSource() == antiAliasButton ) {
+                 //supersample the edge pixels: off, 4 then 16 samples
+                 if (antiAliasSamples == 1)
+                     antiAliasSamples = 4;
+                 else if (antiAliasSamples == 4)
+                     antiAliasSamples = 16;
+                 else
+                     antiAliasSamples = 1;
+                 if (antiAliasSamples == 1)
+                     antiAliasButton.setLabel("Anti-alias: Off");
+                 else
+                     antiAliasButton.setLabel("Anti-alias: " + antiAliasSamples + "x");
+                 final int samples = antiAliasSamples;
+                 render(new Runnable() {
+                     public void run() {
+                         myFractal.setAntiAlias(samples);
+                     }
+                 });
                  repaint();
          } else
          //***********
@@ -540,7 +727,14 @@ public class FractViewer extends JFrame implements FractalViewer,
                  } while ( (repeats<1 || repeats>numIter) && !cancelled );
                  if (!cancelled) {
                     colorRepeats = repeats;
-                    myFractal.changeColors( colorSet, colorMode, colorRepeats);
+                    final int [] colors = colorSet;
+                    final int mode2 = colorMode;
+                    final int reps = colorRepeats;
+                    render(new Runnable() {
+                        public void run() {
+                            myFractal.changeColors( colors, mode2, reps);
+                        }
+                    });
                  }
              }    
              
@@ -570,7 +764,12 @@ public class FractViewer extends JFrame implements FractalViewer,
              if (!cancelled) {
                  palette = temp;
                  colorSet = grManager.getGradient(palette);
-                 myFractal.changeColors( colorSet, 1, 1 );                                          
+                 final int [] colors = colorSet;
+                 render(new Runnable() {
+                     public void run() {
+                         myFractal.changeColors( colors, 1, 1 );                                          
+                     }
+                 });
                  repaint();
              }   
          } 
@@ -619,13 +818,23 @@ public class FractViewer extends JFrame implements FractalViewer,
              if (totalSteps==0) cancelled=true;
              
              if (!cancelled) {
-                 for ( int i = 0 ; i < totalSteps; i++ ) {
-                     if ( cyclePos ) {
+              // after the render in flight, on the render thread
+              final int frames = totalSteps;
+              final boolean up = cyclePos;
+              final int step = colorStep;
+              final String name = filename;
+              final int width = this.width;
+              final int height = this.height;
+              myFractal.afterRender(new Runnable() {
+               public void run() {
+                 String filename = name;
+                 for ( int i = 0 ; i < frames; i++ ) {
+                     if ( up ) {
                          //roll color array two steps to the right, makes colors move "up" in the fractal
-                         cycleUp ( colorStep, 1 );
+                         myFractal.cycleColorsUp ( step );
                         } 
                         else {
-                            cycleDown ( colorStep, 1 );
+                            myFractal.cycleColorsDown ( step );
                         }
                         try {
                             //create image buffer for outstream to disk
@@ -634,10 +843,11 @@ public class FractViewer extends JFrame implements FractalViewer,
                             //load raw pixel array from Fractal into buffer 
                             bf.setRGB(0,0,width,height,myFractal.getPix(),0, width ); 
                             File FractPic = new File(filename + Integer.toString(i) +".png");
-                            ImageIO.write(bf, "png", FractPic );  //thanks for the encoder Java
+                            writePng(bf, FractPic );
                         } catch ( Exception ex ) {System.out.println(ex); }//add something here :0     
                   }
-          
+               }
+              });
              }
         }
     }
@@ -671,38 +881,96 @@ public class FractViewer extends JFrame implements FractalViewer,
                  } catch (Exception ex) {}
              } while (!cancelled && (temp == null || temp == "") );                      
              if (!cancelled) {                     
+              // save once the render in flight is done
+              final String name = temp;
+              final int width = this.width;
+              final int height = this.height;
+              myFractal.afterRender(new Runnable() {
+               public void run() {
                  try {
                      //create image buffer for outstream to disk
                      BufferedImage bf = new BufferedImage(width, height,
                         BufferedImage.TYPE_INT_RGB);
                      //load raw pixel array from Fractal into buffer 
                      bf.setRGB(0,0,width,height,myFractal.getPix(),0, width ); 
-                     File FractPic = new File(temp + ".png");
-                     ImageIO.write(bf, "png", FractPic );  //thanks for the encoder Java
+                     File FractPic = new File(name + ".png");
+                     writePng(bf, FractPic );
                  } catch ( Exception ex ) {System.out.println(ex); }//add something here :0     
+               }
+              });
              }             
          }
 }
     // set up for animating color cycling, fixed to one frame at a time at button press
     // until issues can be resolved (image.animate() method in AWT looks promising)
-    private void cycleUp ( int step, int num ) {
-        for ( int i = 0; i < num ; i++ ) {                
-            myFractal.cycleColorsUp ( step );
-            repaint();
-        }
+    // cycling waits for the render in flight instead of cancelling it
+    private void cycleUp ( final int step, final int num ) {
+        myFractal.afterRender(new Runnable() {
+            public void run() {
+                for ( int i = 0; i < num ; i++ ) {                
+                    myFractal.cycleColorsUp ( step );
+                }
+            }
+        });
+        repaint();
     }  
     
-    private void cycleDown ( int step, int num ) {
-        for ( int i = 0; i < num ; i++ ) {                                        
-            myFractal.cycleColorsDown ( step );             
-            repaint(); 
-        }
+    private void cycleDown ( final int step, final int num ) {
+        myFractal.afterRender(new Runnable() {
+            public void run() {
+                for ( int i = 0; i < num ; i++ ) {                                        
+                    myFractal.cycleColorsDown ( step );             
+                }
+            }
+        });
+        repaint(); 
     } 
     
+    //moveCenter shifts the center by an offset small enough for a double,
+    //the sum is kept in BigDecimal with a few digits past the pixel size
+    private void moveCenter(double dx, double dy)
+    {
+        MathContext mc = new MathContext(20 + Math.max(0,
+                                         (int)Math.ceil(Math.log10(fz))));
+        bigFx = bigFx.add(new BigDecimal(dx), mc);
+        bigFy = bigFy.add(new BigDecimal(dy), mc);
+        fx = bigFx.doubleValue();
+        fy = bigFy.doubleValue();
+    }
+
+    //pixelSize is the size of a pixel in the complex plane, the
+    //widest side of the image spans 4/fz
+    private double pixelSize()
+    {
+        if (aspect>=1)
+            return (4.0/width) / fz;
+        return (4.0/height) / fz;
+    }
+
+    //the wheel zooms 2x in or out about the pixel under the mouse, so the
+    //pixels the frames share land on whole pixels and Fractal reuses them
+    public void mouseWheelMoved(MouseWheelEvent e)
+    {
+        if (selectJuliaMode) return;
+        double d = pixelSize();
+        double offX = e.getX() - (width/2.0);
+        double offY = e.getY() - (height/2.0);
+        if (e.getWheelRotation() < 0) {
+            moveCenter(offX * d/2, -offY * d/2);     //in: mouse point moves half way to center
+            fz *= 2;
+        } else {
+            moveCenter(-offX * d, offY * d);         //out: mouse point stays put
+            fz /= 2;
+        }
+        redrawFractal();
+    }
+
     //"almost" defaults all params need to iron out control structure with Fractal
     private void resetFractal(){
          fx = 0;
          fy = 0;
+         bigFx = BigDecimal.ZERO;
+         bigFy = BigDecimal.ZERO;
          fz = 1;
          juliaX = 0;
          juliaY = 0;
@@ -732,7 +1000,10 @@ public class FractViewer extends JFrame implements FractalViewer,
             fractalPanel.add ( boundBox, 0 );  
             fractalPanel.repaint();
             repaint();           
-        } 
+        } else {
+            panX = e.getX();                            //zoom off, drag pans
+            panY = e.getY();
+        }
     }
         
     public void mouseDragged( MouseEvent e ) 
@@ -885,14 +1156,33 @@ public class FractViewer extends JFrame implements FractalViewer,
             width = DEFAULT_WIDTH_SQUARE;
             fx = 0;
             fy = 0;
+            bigFx = BigDecimal.ZERO;
+            bigFy = BigDecimal.ZERO;
             fz = 1;
-            myFractal.setJulia( juliaX, juliaY, 0, 0, 1, DEFAULT_HEIGHT_SQUARE,
-                DEFAULT_WIDTH_SQUARE, DEFAULT_ITERS);
+            final double jx = juliaX;
+            final double jy = juliaY;
+            render(new Runnable() {
+                public void run() {
+                    myFractal.setJulia( jx, jy, 0, 0, 1, DEFAULT_HEIGHT_SQUARE,
+                        DEFAULT_WIDTH_SQUARE, DEFAULT_ITERS);
+                }
+            });
             selectJuliaMode = false;
             zoom = oldZoom;                       //restore zoom state
             if (zoom)  zoomButton.setLabel ( "Toggle Zoom: On"); 
             repack();                                
         }
+        else if (!zoom)
+        {
+            //pan by the drag, whole pixels so the rest of the image is reused
+            int dx = e.getX() - panX;
+            int dy = e.getY() - panY;
+            if (dx != 0 || dy != 0) {
+                double d = pixelSize();
+                moveCenter(-dx * d, dy * d);
+                redrawFractal();
+            }
+        }
         else 
         {
             //Zoom Time!!
@@ -921,8 +1211,8 @@ public class FractViewer extends JFrame implements FractalViewer,
                 {                
                     //parent zoom fixed to width
                     //use width for transform
-                    fx += ( bbCenterX - (width/2.0) ) * (4.0/width) / fz;            
-                    fy -= ( bbCenterY - (height/2.0) ) * (4.0/width) / fz;
+                    moveCenter(( bbCenterX - (width/2.0) ) * (4.0/width) / fz,
+                               -( bbCenterY - (height/2.0) ) * (4.0/width) / fz);
                     //use widest side of child image to fix child zoom
                     if (newAspect>=1)                 
                         fz *=(double) width /(double)(boxWidth) ;                                    
@@ -933,8 +1223,8 @@ public class FractViewer extends JFrame implements FractalViewer,
                     //parent aspect <1
                     //parent zoom fixed to height
                     //use height for transform
-                    fx += ( bbCenterX - (width/2.0) ) * (4.0/height) / fz;
-                    fy -= ( bbCenterY - (height/2.0) ) * (4.0/height) / fz;
+                    moveCenter(( bbCenterX - (width/2.0) ) * (4.0/height) / fz,
+                               -( bbCenterY - (height/2.0) ) * (4.0/height) / fz);
                     //use widest side of child image to fix child zoom
                     if (newAspect>=1)
                         fz *= (double)height /(double) (boxWidth);
@@ -999,13 +1289,14 @@ public class FractViewer extends JFrame implements FractalViewer,
         fractalPanel.setSize (new Dimension(width, height) );       
         Insets i = getInsets();
         fractalPanel.setBounds ( 20 + BUTTON_PANEL_WIDTH, 10, width, height );
+        statusLabel.setBounds ( 20 + BUTTON_PANEL_WIDTH, 10 + height, width, STATUS_HEIGHT );
         buttonPanel.setBounds ( 10, 10, BUTTON_PANEL_WIDTH,
             BUTTON_PANEL_HEIGHT );
         frameWidth = width + i.left + i.right + BUTTON_PANEL_WIDTH + 30;
-        if (height < BUTTON_PANEL_HEIGHT )
+        if (height + STATUS_HEIGHT < BUTTON_PANEL_HEIGHT )
            frameHeight = BUTTON_PANEL_HEIGHT + i.top + i.bottom + 20;
         else
-           frameHeight = height + i.top + i.bottom+ 20;
+           frameHeight = height + STATUS_HEIGHT + i.top + i.bottom+ 20;
         setBounds (getX(), getY() , frameWidth ,frameHeight );
         setSize( frameWidth, frameHeight );
         fractalPanel.add(myFractal);
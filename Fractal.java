@@ -10,7 +10,12 @@
 
 import java.awt.*;
 import java.awt.image.*;
+import java.io.*;
 import javax.swing.*;
+import java.math.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 
 public class Fractal extends Component
@@ -23,6 +28,8 @@ public class Fractal extends Component
     protected double xCenter; // center x of the fractal 
     protected double yCenter;  // center y of the fractal
     protected double uLx,uLy; // the upper left corner coordinates
+    protected double uLxLo, uLyLo; // low parts of the corner, double-double
+    protected BigDecimal deepX, deepY; // the center at full precision for deep zooms
     protected int numIter; // total num of times to iterate
     protected int [] colorSet; // the color set to use, SUPPLIED BY HANDLER
     protected int [] preMixColors; // pre-mixed colorset map for speed
@@ -33,6 +40,7 @@ public class Fractal extends Component
     protected int [] iterationData; // stores iteration data for speed regen.
     protected double [] xCoords; // pre-mapped for speed
     protected double [] yCoords; //  "    "     "    "
+    protected double [] xCoordsLo, yCoordsLo; // low parts of the coords, double-double
     protected int [] pix; // pixel array for Image (ARGB flat-array)
     protected int [] temp; 
     protected boolean useSpeedPass; // turn on SpeedPass two pass quess mode
@@ -56,6 +64,124 @@ public class Fractal extends Component
     public static final int INNERCOLOR_ANGLE_BASED = 1;
     protected int pixelColorScheme;
     protected int innerPixelColorScheme;
+    public static final int TILE_SIZE = 64; // edge of a square render tile
+    protected static ForkJoinPool renderPool = new ForkJoinPool(defaultRenderThreads());
+    protected double maxEscapeMag; // squared escape magnitude for the mag schemes
+    protected int tilesAcross, numTiles; // tile grid of the current render
+    protected AtomicInteger tilesDone; // tiles finished so far
+    protected volatile int lastPercent; // last percent shown on the progress frame
+    protected JFrame progress; // frame showing percent complete, null if headless
+    protected boolean ownsProgress; // true if we threw up the progress frame
+    public static final double PERIOD_TOLERANCE = 0.01; // cycle match, in pixels
+    protected boolean usePeriodicity; // stop interior orbits once they cycle
+    protected double periodEps; // cycle match distance in the complex plane
+    protected AtomicLong periodicitySaved = new AtomicLong(); // iterations skipped
+    protected boolean interiorNeedsZ; // inner coloring of this render uses the final z
+    protected boolean usePeriodicityNow; // periodicity check runs in this render
+    protected boolean useBulbTest; // z^2 Mandlebrot: reject cardioid and bulb points
+    protected EscapeKernel kernel; // escape loop picked for power at render start
+    protected boolean useVectorKernel = Boolean.getBoolean("fractal.vector"); // SIMD rows
+    protected RowKernel rowKernel; // row kernel picked at render start, null for scalar
+    private static RowKernel vectorKernel; // loaded VectorKernel, null if unavailable
+    private static boolean vectorKernelTried; // only try to load it once
+    public static final int PRECISION_AUTO = 0; // pick from the zoom
+    public static final int PRECISION_DOUBLE = 1;
+    public static final int PRECISION_PERTURBATION = 2;
+    public static final int PRECISION_DOUBLE_DOUBLE = 3;
+    public static final int DEEP_ZOOM_ULPS = 64; // smallest pixel size, in ulps of the coords
+    public static final int MAX_REFERENCES = 16; // reference orbits per deep render
+    protected int precisionMode = PRECISION_AUTO;
+    protected PerturbationEngine deep; // engine of a deep render, null otherwise
+    protected DoubleDoubleKernel ddKernel; // kernel of a double-double render, null otherwise
+    protected boolean [] glitched; // deep pixels that lost precision
+    protected int glitchedPixels; // glitched pixels left after the last deep render
+    protected boolean useSubdivision; // Mariani-Silver rectangle subdivision
+    public static final int MIN_SUBDIVIDE = 6; // rectangles this thin are just computed
+    protected AtomicLong pixelsFilled = new AtomicLong(); // filled without iterating
+    protected AtomicLong pixelsComputed = new AtomicLong(); // iterated by subdivision
+    protected boolean useBoundaryTrace; // trace iteration band outlines, fill inside
+    protected boolean traceNow; // boundary tracing runs in this render
+    protected byte [] traced; // TRACE_ flags per pixel of a traced render
+    public static final byte TRACE_LOADED = 1; // pixel has been iterated
+    public static final byte TRACE_QUEUED = 2; // pixel has been put on the trace queue
+    protected boolean useProgressive; // show 1/16 and 1/4 resolution first
+    public static final int PROGRESSIVE_STEP = 4; // sample spacing of the first level
+    protected int levelStep; // sample spacing of the level being rendered, 0 if not
+    protected int tileRuns = 1; // times each tile is rendered this render
+    protected AtomicInteger generation = new AtomicInteger(); // bumped to cancel renders
+    protected final Runnable cancelCheck = new Runnable() { // checkCancelled for the PerturbationEngine
+        public void run() {
+            checkCancelled();
+        }
+    };
+    protected volatile int renderGen; // generation the running render belongs to
+    protected boolean inRenderTask; // renderGen was set by a renderLater task
+    protected volatile boolean renderComplete = true; // last render ran to the end
+    protected final Object recolorLock = new Object(); // held by color cycles and by a render letting its frame go
+    protected ArrayList<Integer> pendingCycles = new ArrayList<Integer>(); // cycles asked for mid-render, + up, - down
+    protected ExecutorService renderExecutor; // the thread renderLater tasks run on
+    public static final double REUSE_TOLERANCE = 1e-3; // grid match, in pixels
+    protected boolean mayReuse; // redraw asked to reuse the last render's pixels
+    protected boolean [] reused; // pixels copied from the last render, null if none
+    protected int reusedPixels; // pixels the last render copied
+    protected int [] lastData; // iterationData of the last complete render
+    protected int lastWidth, lastHeight; // its size
+    protected BigDecimal lastX, lastY; // its center
+    protected double lastXStep, lastYStep; // its pixel size
+    protected String lastKey; // renderKey of the last complete render
+    protected double [] orbitX, orbitY; // final z of inside pixels while rendering, NaN if not iterated
+    protected double [] orbitXLo, orbitYLo; // their low parts, double-double renders only
+    protected int [] resumeIndex; // pixels that never escaped, null if the render can't be resumed
+    protected double [] resumeZ; // their final z: x, y, then x and y low parts for double-double
+    protected int resumeIter; // iteration the resumeZ orbits stopped at
+    protected boolean useSmoothColors; // color from a fractional iteration count
+    protected float [] smoothData; // smooth iteration count per pixel, null if not kept
+    protected float [] lastSmooth; // smoothData of the last complete render
+    public static final double SMOOTH_BAILOUT = 1e10; // squared |z| the smooth count is taken at
+    public static final int SMOOTH_STEPS = 8; // most iterations past the escape to get there
+    public static final int ROWS_PER_TASK = 16; // rows a recolor task does
+    protected boolean useDistanceFill; // fill disks the distance estimate clears
+    protected DistanceKernel distanceKernel; // kernel of a distance fill render, null otherwise
+    public static final double DISTANCE_MIN_RADIUS = 2; // smallest disk worth filling, in pixels
+    public static final int DISTANCE_PROBE_STEP = 4; // pixels between distance estimates
+    protected AtomicLong distanceSkipped = new AtomicLong(); // pixels filled from a disk
+    protected boolean useAutoIterations; // pick numIter from the zoom and a probe render
+    public static final int AUTO_MIN_ITERS = 256; // fewest iterations auto picks
+    public static final int AUTO_MAX_ITERS = 1 << 20; // most iterations auto picks
+    public static final int AUTO_PROBE_DIVISOR = 8; // probe is this many times smaller across and down
+    public static final double AUTO_MISS = 0.001; // share of probe pixels left to escape past the cap
+    public static final double AUTO_MARGIN = 1.25; // headroom over the probe's pick
+    protected int antiAliasSamples = 1; // most samples an edge pixel takes, 1 for none
+    public static final int AA_MAX_SAMPLES = 16; // cap on antiAliasSamples
+    public static final int AA_FIRST_SAMPLES = 4; // extra samples before a flat pixel stops
+    public static final double R2_X = 0.7548776662466927; // steps of the R2 sequence, 1/g and 1/g^2
+    public static final double R2_Y = 0.5698402909980532; // for the plastic number g
+    protected int [] aaSlot; // entry of each pixel in the aa arrays, -1 if none, null if not anti-aliased
+    protected int [] aaIndex; // edge pixels of the frame
+    protected int [] aaTaken; // extra samples each one took
+    protected int [] aaData; // their iterationData values, aaStride per entry
+    protected float [] aaSmooth; // their smoothData values, null if not kept
+    protected int aaStride; // antiAliasSamples - 1 when they were taken
+    protected AtomicLong aaSamples = new AtomicLong(); // extra samples taken for the frame
+    protected static TileCache tileCache = new TileCache(Long.getLong("fractal.tilecache",
+        TileCache.DEFAULT_BUDGET).longValue()); // shared by every Fractal
+    static {
+        // -Dfractal.tilestore=dir keeps tiles on disk too
+        String dir = System.getProperty("fractal.tilestore");
+        if (dir != null) {
+            openTileStore(new File(dir), Long.getLong("fractal.tilestore.budget",
+                TileStore.DEFAULT_BUDGET).longValue());
+        }
+    }
+    protected boolean useTileCache = true; // take tiles from and give tiles to the tileCache
+    protected boolean tilesExact; // this render computes its pixels, its tiles may be cached
+    protected String tileGrid; // pixel size and sub-pixel phase of this render's lattice
+    protected BigInteger tileCol, tileRow; // lattice column of pixel column 0, row of row 0
+    protected int cachedTiles; // tiles this render took from the tileCache
+    protected AtomicLong iterationsCounted = new AtomicLong(); // escape counts of the pixels iterated
+    protected AtomicLong insideCounted = new AtomicLong(); // pixels iterated that reached the cap
+    protected AtomicInteger maxEscaped = new AtomicInteger(); // highest count of a pixel iterated that escaped
+    protected RenderStats renderStats; // cost of the last complete render, null before one
 
     /**
      * This constructor of the Fractal Class uses the x and y
@@ -97,15 +223,21 @@ public class Fractal extends Component
         zoom = fractZoom; 
         xCenter = xAtCenter;
         yCenter = yAtCenter;
+        deepX = new BigDecimal(xAtCenter);
+        deepY = new BigDecimal(yAtCenter);
         if (aspectR >= 1) {
             uLx = xCenter - 2.0/zoom; // transform center to upper left corner           
             uLy = yCenter + 2.0/(zoom*aspectR);
+            uLxLo = lowPart(deepX, -2.0/zoom, uLx);
+            uLyLo = lowPart(deepY, 2.0/(zoom*aspectR), uLy);
             //System.out.println("init Fractal= uLx= "+ uLx);
             //System.out.println("init Fractal= uLy= "+ uLy);
             //     "       "     "   "     "    "
         } else {
             uLx = xCenter - (2.0*aspectR)/zoom; // transform center to upper left corner
             uLy = yCenter + 2.0/zoom; //     "       "     "   "     "    "
+            uLxLo = lowPart(deepX, -(2.0*aspectR)/zoom, uLx);
+            uLyLo = lowPart(deepY, 2.0/zoom, uLy);
             //System.out.println("init Fractal= uLx= "+ uLx);
             //System.out.println("init Fractal= uLy= "+ uLy);
         }
@@ -118,6 +250,8 @@ public class Fractal extends Component
         preMixColors = mixColorSet ();          
         yCoords = new double [height];
         xCoords = new double [width];
+        yCoordsLo = new double [height];
+        xCoordsLo = new double [width];
         this.power = power;
         this.isMandlebrot = isMandlebrot;
         this.juliaX = juliaX;
@@ -140,6 +274,8 @@ public class Fractal extends Component
 
     protected int[] mixColorSet()
     {    
+        FractalEvents.MixColors event = new FractalEvents.MixColors();
+        event.begin();
         int [] mixedSet = new int [numIter]; 
                                    
         switch (colMode)
@@ -220,6 +356,9 @@ public class Fractal extends Component
                     *numColors*colRepeats)%numColors];               
                 }
         }  
+     event.colorMode = colMode;
+     event.colorRepeats = colRepeats;
+     commitEvent(event, numIter);
      return mixedSet;             
      }   
 
@@ -234,12 +373,19 @@ public class Fractal extends Component
         zoom = fractZoom; 
         xCenter = xAtCenter;
         yCenter = yAtCenter;
+        deepX = new BigDecimal(xAtCenter);
+        deepY = new BigDecimal(yAtCenter);
         uLx = xCenter - 2.0/zoom; // transform center to upper left corner
         uLy = yCenter + 2.0/zoom; //     "       "     "   "     "    "
+        uLxLo = 0;
+        uLyLo = 0;
         numIter = numIterates;               
         yCoords = new double [nPix];
         xCoords = new double [nPix];
+        yCoordsLo = new double [nPix];
+        xCoordsLo = new double [nPix];
         this.useSpeedPass = useSpeedPass;
+        beginRender(); // the old frame goes
         iterationData = new int [nPix * nPix]; // store iterations
         generateImage();
         v.notifyMe();
@@ -253,42 +399,41 @@ public class Fractal extends Component
      * The generateImage method does the work of computing the pixels
      * and creating a single instance of MemoryImageSource
      * to use the pixel array. This is the time consuming
-     * part of the code
+     * part of the code. Without SpeedPass the frame is cut into
+     * TILE_SIZE square tiles which are rendered on the shared
+     * work-stealing renderPool.
      */
     
 
     public void generateImage()
 
     {
-        double startT = (double)(System.currentTimeMillis())/1000.0;
-        JFrame progress = null;
-        boolean isParent = false;
-        double maxnormsq = 0;
-        int limit;
+        long startT = System.nanoTime();
+        long startCpu = RenderStats.processCpuNanos();
+        long startBytes = RenderStats.allocatedBytes();
+        if (!inRenderTask) renderGen = generation.get();
+        boolean reuse = mayReuse;
+        mayReuse = false;
+        reused = null;
+        reusedPixels = 0;
+        if (useAutoIterations) {
+            try {
+                pickIterations();
+            } catch (CancellationException ex) {
+                renderComplete = false; // redraw already let the old frame go
+                return;
+            }
+        }
+        openProgress();
         // max escape magnitude tied to power =  (2 ^ power) + 2;
         double maxescapemag=1;
         for ( int i = 0 ; i < power; i ++ )  {
             maxescapemag *= 2;
         }
         maxescapemag += 2;
-        maxescapemag = maxescapemag * maxescapemag;
-        if ( v.getFrame() instanceof JFrame ) 
-        {
-            progress = (JFrame) v.getFrame();
-            isParent = true;
-        } else {
-            progress = new JFrame();
-            progress.setBounds (10,10,80,20);
-            progress.setSize (400, 20 );
-            progress.getContentPane().add( new bBox (0,0,380 , 10 , Color.white ));
-            progress.setVisible ( true );
-            progress.show();
-            progress.validate();
-            progress.repaint();
-        }
+        maxEscapeMag = maxescapemag * maxescapemag;
 
         pix = new int [width * height] ; // the pixel array
-        int index = 0; // index counter for the pixel array
         if (aspectR >=1){
             xZoomFactor = 4.0/(width*zoom); // magnifcation factor of 4x4 square 
             yZoomFactor = 4.0/(height*zoom*aspectR);
@@ -297,703 +442,2954 @@ public class Fractal extends Component
             yZoomFactor = 4.0/(height*zoom);
         }
         int i = 0;
+        FractalEvents.CoordinateMap mapEvent = new FractalEvents.CoordinateMap();
+        mapEvent.begin();
            
         // pre map x and y coords for speed and later regen.
+        // the Lo arrays keep what rounding dropped, for double-double
         for (i = 0; i < width; i++)
         {
-            xCoords [i] = (i*xZoomFactor)+uLx;
+            double step = i*xZoomFactor;
+            xCoords [i] = step+uLx;
+            xCoordsLo [i] = DoubleDoubleKernel.sumError(step, uLx, xCoords[i])
+                + Math.fma(i, xZoomFactor, -step) + uLxLo;
         }
 
         for (i = 0; i < height; i++)
         {
-            yCoords [i] =-(i*yZoomFactor)+uLy;
+            double step = i*yZoomFactor;
+            yCoords [i] =-step+uLy;
+            yCoordsLo [i] = DoubleDoubleKernel.sumError(-step, uLy, yCoords[i])
+                - Math.fma(i, yZoomFactor, -step) + uLyLo;
         }
-        // the y scan raster
-        if (!useSpeedPass)
-        {
-            // no SpeedPass: calculate every pixel
-            for (int y = 0; y < height; y++) {
-                // the x scan raster
-                for (int x = 0; x < width; x++) {
-                    double zx = 0;
-                    double zy = 0;
-                    double incrX = xCoords[x];
-                    double incrY = yCoords[y];
-                    double tempzx = 0;
-                    double origZx;
-                    double origZy;
-
-                    if (!isMandlebrot) 
-                    {    
-                        zx = xCoords[x];
-                        zy = yCoords[y];
-
-                        incrX = juliaX;
-                        incrY = juliaY;
-                    }                    
-
-                    // the iteration loop                
-                    
-                    for (i=0 ; i < numIter; i++) {            
-                        origZx = zx;
-                        origZy = zy;
-                        for (int j=0; j < power-1; j++) {
-                            tempzx = (zx*origZx)- (zy*origZy); //real part
-                            zy = zx*origZy + zy*origZx; // imag
-                            zx = tempzx;
-                        }
-                        zx += incrX;
-                        zy += incrY;
-                        if (zx*zx + zy*zy > 4) break; // the "escape value"
-                    }
- 
-                    
-                    // here is switches for various pixel coloring schemes
-                    if (i<numIter) {
-                        double normsq;
-                        int ratio_ind;
-                        double radius;
-                        double angle;
-                        double cosine;
-                        switch ( pixelColorScheme ) {
-
-                            case PIXEL_ITERATION_BASED:
-                                iterationData [index] = i; // store iter. val for regen.     
-                                pix[index++]=preMixColors[i];    
-                                break;
-                                case PIXEL_MAGNITUDE_BASED:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind = (int)((normsq/maxescapemag)*(numIter-1));
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-  
-                                case PIXEL_COS_BASED:
-                                    cosine=0;
-                                    normsq = zx*zx + zy*zy;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) cosine = xCoords[x]/radius;
-                                    ratio_ind = (int)( ((cosine+1)/2)*(numIter-1) );
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-
-                                case PIXEL_SIN_BASED:
-                                    double sine=0;
-                                    normsq = zx*zx + zy*zy;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) sine = yCoords[y]/radius;
-                                    ratio_ind = (int)(((sine+1)/2)*(numIter-1));
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-
-                                    case PIXEL_MAG_SHIFT_ANGLE_BASED:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    cosine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) cosine = xCoords[x]/radius;
-                                    angle = Math.acos(cosine);
-                                    if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
-                                    
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind =(int)((normsq/maxescapemag)*(numIter-1));
-                                    // now rotate mag based on angle
-                                    ratio_ind += (int)( ( angle/(2*Math.PI) )*(numIter-1) );
-                                    if (ratio_ind>(numIter-1)) ratio_ind -= (numIter-1);
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-                                    
-                                    case PIXEL_ITER_SHIFT_ANGLE_BASED:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    cosine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) cosine = xCoords[x]/radius;
-                                    angle = Math.acos(cosine);
-                                    if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
-                                    
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind =i;
-                                    // now rotate mag based on angle
-                                    ratio_ind += (int)( ( angle/(2*Math.PI) )*(numIter-1) );
-                                    if (ratio_ind>(numIter-1)) ratio_ind -= (numIter-1);
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-                                    
-                                    case PIXEL_ANGLE_BASED:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    cosine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) cosine = xCoords[x]/radius;
-                                    angle = Math.acos(cosine);
-                                    if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
-                                    
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind = (int)( ( angle/(2*Math.PI) )*(numIter-1) );
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-                                    
-                                    
-                                    case PIXEL_MAG_SHIFT_COS_BASED:
-                                    //case 7:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    cosine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) cosine = xCoords[x]/radius;
-                                    //angle = Math.acos(cosine);
-                                    //if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
-                                    
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind =(int)((normsq/maxescapemag)*(numIter-1));
-                                    // now rotate mag based on angle
-                                    ratio_ind += (int)( ( (cosine+1)/2 )*(numIter-1) );
-                                    if (ratio_ind>(numIter-1)) ratio_ind -= (numIter-1);
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-                                    
-                                    case PIXEL_MAG_SHIFT_SIN_BASED:
-
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    sine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) sine = yCoords[y]/radius;
-                                    //angle = Math.acos(cosine);
-                                    //if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
-                                    
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind =(int)((normsq/maxescapemag)*(numIter-1));
-                                    // now rotate mag based on angle
-                                    ratio_ind += (int)( ( (sine+1)/2 )*(numIter-1) );
-                                    if (ratio_ind>(numIter-1)) ratio_ind -= (numIter-1);
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-                                    
-                                    case PIXEL_ITER_SHIFT_COS_BASED:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    cosine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) cosine = xCoords[x]/radius;
-                                    //angle = Math.acos(cosine);
-                                    //if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
-                                    
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind =i;
-                                    // now rotate iters based on angle
-                                    ratio_ind += (int)( ( (cosine+1)/2 )*(numIter-1) );
-                                    if (ratio_ind>(numIter-1)) ratio_ind -= (numIter-1);
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-                                    
-                                    case PIXEL_ITER_SHIFT_SIN_BASED:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    sine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) sine = yCoords[y]/radius;
-                                    //angle = Math.acos(cosine);
-                                    //if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
-                                    
-                                    // since numIter is tied to num preset colors for now
-                                    // use it to set pixel coloring
-                                    ratio_ind = i;
-                                    // now rotate iters based on angle
-                                    ratio_ind += (int)( ( (sine+1)/2 )*(numIter-1) );
-                                    if (ratio_ind>(numIter-1)) ratio_ind -= (numIter-1);
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;
-                                    
-                                    
-                        }
-                        // never escaped, is part of the inside fractal set
-                    }
-                    else  {
-                        double normsq, cosine, radius, angle;
-                        int ratio_ind;
-                        switch ( innerPixelColorScheme ) {
-                            case INNERCOLOR_BLACK:
-                                iterationData [index] = i; // store iter. val for regen.
-                                pix[index++] =255 << 24; // color black
-                                break;
-                                
-                                case INNERCOLOR_ANGLE_BASED:
-                                    // hit escape value at iteration i
-                                    // check original x and y werent outside of circle radius 2
-                                    
-                                    if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
-                                        normsq = maxescapemag;
-                                    }
-                                    else {
-                                        normsq = zx*zx + zy*zy;
-                                    }
-                                    if ( normsq > maxnormsq ) {
-                                        maxnormsq = normsq;
-                                    }
-                                    cosine=0;                                    
-                                    radius = Math.sqrt(normsq);
-                                    if ( radius != 0 ) cosine = xCoords[x]/radius;
-                                    angle = Math.acos(cosine);
-                                    if (yCoords[y] < 0 )angle = 2*Math.PI-angle;                                    
-                                    ratio_ind = (int)( ( angle/(2*Math.PI) )*(numIter-1) );
-                                    iterationData [index] = ratio_ind; // store iter. val for regen.
-                                    pix[index++]=preMixColors[ratio_ind];
-                                    break;                                
-                        }
-                    }
-
-                    
-                    
-                }                      
-            int percent = (int)((y+1)/(double)height*100+0.5); 
-            progress.setTitle("Calculating image: " + percent + "% complete "); 
-            progress.repaint();            
-            }
+        commitEvent(mapEvent, (long)width*height);
+        periodEps = Math.min(xZoomFactor, yZoomFactor) * PERIOD_TOLERANCE;
+        periodicitySaved.set(0);
+        iterationsCounted.set(0);
+        insideCounted.set(0);
+        maxEscaped.set(0);
+        interiorNeedsZ = innerPixelColorScheme != INNERCOLOR_BLACK;
+        usePeriodicityNow = usePeriodicity && !interiorNeedsZ;
+        useBulbTest = power == 2 && isMandlebrot && !interiorNeedsZ;
+        kernel = EscapeKernel.forPower(power);
+        deep = null;
+        ddKernel = null;
+        if (precisionMode == PRECISION_PERTURBATION
+            || (precisionMode == PRECISION_AUTO && needsPerturbation())) {
+            deep = new PerturbationEngine(deepX, deepY, width/2.0, height/2.0,
+                xZoomFactor, yZoomFactor, power, isMandlebrot, juliaX, juliaY, numIter);
+            deep.setCancelCheck(cancelCheck);
+        } else if (precisionMode == PRECISION_DOUBLE_DOUBLE
+            || (precisionMode == PRECISION_AUTO && needsDeepZoom())) {
+            ddKernel = new DoubleDoubleKernel(power);
         }
-        else
-        {
-        boolean evenPixels = true;
-            if (width%2==0)  
-            {
-                evenPixels = true;
-            }else evenPixels = false;
-
-            // Pass-One:
-            // draw every-other pixel, alternately
-            // staggering every-other row            
-
-            boolean evenScan = true;
-            for (int y = 0; y < height; y++ ) 
-            {
-                // the x scan raster                
-                int temp = 0;
-                if (!evenScan) temp= 1;
-                for (int x = temp; x < width; x+=2) {
-                    double zx = 0;
-                    double zy = 0;
-                    double incrX = xCoords[x];
-                    double incrY = yCoords[y];
-                    double tempzx = 0;
-                    double origZx;
-                    double origZy;
-
-                    if (!isMandlebrot) 
-                    {    
-                        zx = xCoords[x];
-                        zy = yCoords[y];
-                        incrX = juliaX;
-                        incrY = juliaY;
-                    }                    
-                    // the iteration loop                
-                    
-                    for (i=0 ; i < numIter; i++) {            
-                        origZx = zx;
-                        origZy = zy;
-                        for (int j=0; j < power-1; j++) {
-                            tempzx = (zx*origZx)- (zy*origZy); //real part
-                            zy = zx*origZy + zy*origZx; // imag
-                            zx = tempzx;
-                        }
-                        zx += incrX;
-                        zy += incrY;
-                        if (zx*zx + zy*zy > 4) break; // the "escape value"
-                    }
-                    iterationData [index] = i; // store iter. val for regen.    
-                    if (i < numIter) {  // hit escape value at iteration i     
-                        pix[index]=preMixColors[i];    
-  
-                    }
-                    // never escaped, is part of the inside fractal set
-                    else 
-                    {
-                        pix[index] =255 << 24; // color black                        
-                    }    
-                    index += 2;
-                }
-            if (evenScan && evenPixels) index++;
-            if (!evenScan && evenPixels) index--;                                                     
-            evenScan  = (!evenScan);
-            int percent = (int)((y+1)/(double)height*100+0.5); 
-            progress.setTitle("Calculating Image--Pass One: "+percent+"%  complete ");             
-            }
-        progress.setTitle("Pass Two: 0% complete");
-        v.notifyMe();
-        index = width +2;
-
-        // Pass Two:
-        // draw every -other pixel checking 4 immediate (North, East,
-        // South, West) neighbors for equality. If so, steal
-        // value and skip iterations
-
-            evenScan = false;
-            for (int y = 1; y < height-1; y++ ) 
-            {
-                // the x scan raster                
-                int temp = 1;
-                if (!evenScan) temp= 2;
-
-                for (int x = temp; x < width-1; x+=2) {
-                    double zx = 0;
-                    double zy = 0;
-                    double incrX = xCoords[x];
-                    double incrY = yCoords[y];
-                    double tempzx = 0;
-                    double origZx;
-                    double origZy;
-
-                    if (!isMandlebrot) 
-                    {    
-                        zx = xCoords[x];
-                        zy = yCoords[y];
-                        incrX = juliaX;
-                        incrY = juliaY;
-                    }                                   
-                    // the iteration loop                
-                    int val = pix[index+1];
-                    if ( (val==pix[index-1]) && 
-                    (val == pix[index+width]) &&
-                    (val == pix[index-width]) )
-                    {
-                        pix[index] = val;
-                        iterationData[index] = iterationData[index+1];
-                    }
-                    else
-                    {    
-                        for (i=0 ; i < numIter; i++)
-                        {            
-
-                            origZx = zx;
-                            origZy = zy;
-                            for (int j=0; j < power-1; j++) {
-                                tempzx = (zx*origZx)- (zy*origZy); //real part
-                                zy = zx*origZy + zy*origZx; // imag
-                                zx = tempzx;
-                            }
-                            zx += incrX;
-                            zy += incrY;
-                            if (zx*zx + zy*zy > 4) break;
-                        }
-                        iterationData [index] = i; // store iter. val for regen.    
-                        if (i < numIter)
-                        {  // hit escape value at iteration i     
-                            pix[index]=preMixColors[i];    
-                        }
-                        // never escaped, is part of the inside fractal set
-                        else 
-                        {
-                            pix[index] =255 << 24; // color black                        
-                        }    
-                    }
-                    index += 2;
-                }
-            if (evenScan)
-            {
-                index = (y+1)*width +2; 
-            } else index = (y+1)*width +1; // different wrap around for odd/ even
-                
-            evenScan  = (!evenScan);
-            int percent = (int)((y+1)/(double)height*100+0.5); 
-            progress.setTitle("Pass Two: " + percent + "% complete ");             
+        if (deep != null || ddKernel != null) {
+            // the double-only shortcuts don't hold this deep
+            useBulbTest = false;
+            usePeriodicityNow = false;
+        }
+        // the row kernel has no periodicity check, leave those renders scalar
+        rowKernel = null;
+        if (useVectorKernel && !usePeriodicityNow && deep == null && ddKernel == null) {
+            rowKernel = getVectorKernel();
+        }
+        smoothData = null;
+        if (useSmoothColors && pixelColorScheme == PIXEL_ITERATION_BASED) {
+            smoothData = new float [width * height];
+        }
+        resumeIndex = null;
+        resumeZ = null;
+        aaSlot = null;
+        keepOrbits();
+        distanceKernel = null;
+        if (useDistanceFill && colorsFromIterations() && deep == null && ddKernel == null
+            && !(useSubdivision || useBoundaryTrace)) {
+            distanceKernel = new DistanceKernel(power, isMandlebrot);
+            rowKernel = null; // the row kernel has no derivative
+        }
+        distanceSkipped.set(0);
+        pixelsFilled.set(0);
+        pixelsComputed.set(0);
+        traceNow = false;
+        traced = null;
+        tilesExact = false;
+        cachedTiles = 0;
+        tileLattice();
+        beginRender();
+        try {
+            renderPixels(reuse);
+            antiAlias();
+        } catch (CancellationException ex) {
+            // a newer render took over, leave the old image up
+            closeProgress();
+            return;
+        }
+        synchronized (recolorLock) {
+            // a cycle asked for now waits until the frame has been kept
+            renderComplete = true;
+            keepForReuse();
+            storeTiles();
+            keepForResume();
+            applyPendingCycles();
+        }
+        closeProgress();
+        myImage = makeImage();
+        long inferred = pixelsFilled.get() + distanceSkipped.get();
+        long reusedCount = 0;
+        if (reused != null) {
+            for (int k = 0; k < reused.length; k++) {
+                if (reused[k]) reusedCount++;
             }
-
         }
-        if ( !isParent ) 
-            progress.dispose();
-        else
-            progress.setTitle(v.getFrameTitle());
-        myImage = createImage(new MemoryImageSource(width,height, pix, 0,width));        
+        publishStats(startT, startCpu, startBytes,
+                     (long)width*height - inferred - reusedCount, inferred,
+                     iterationsCounted.get(), insideCounted.get(), maxEscaped.get());
         v.notifyMe();
         System.gc();
-        double finishT = (double)(System.currentTimeMillis())/1000.0; 
-        //System.out.println("Fractal generateImage() elasped time: " + ( finishT - startT ) );
-        //System.out.println ( "maxnormsq : " + maxnormsq );
-        //System.out.println ( "maxescapemag : " + maxescapemag );
+        //System.out.println ( "maxEscapeMag : " + maxEscapeMag );
     }
 
     /**
-     * The changeColors method allows the pre-mapped iteration
-     * bands to switch colorSet, mode and repeats. Long Live
-     * the chameleon!
-     *
-     * @param cSet - the new (or the same) colorSet
-     * @param cMode the new color mode to apply
-     * @param numReps the new color reps to apply        
+     * publishStats makes renderStats for the render that just finished
+     * and hands it to the RenderMonitor. The pixels neither computed
+     * nor inferred count as reused.
      *
+     * @param startT System.nanoTime() when the render started
+     * @param startCpu RenderStats.processCpuNanos() then
+     * @param startBytes RenderStats.allocatedBytes() then
+     * @param computed pixels iterated
+     * @param inferred pixels filled without iterating
+     * @param iterations escape counts of the pixels iterated
+     * @param interior pixels iterated that reached the cap
+     * @param max highest count of a pixel iterated that escaped
      */
+    protected void publishStats(long startT, long startCpu, long startBytes, long computed,
+                                long inferred, long iterations, long interior, int max)
+    {
+        long wall = System.nanoTime() - startT;
+        long cpu = RenderStats.processCpuNanos();
+        long bytes = RenderStats.allocatedBytes();
+        renderStats = new RenderStats(width, height, power, numIter, wall,
+            startCpu >= 0 && cpu >= 0 ? cpu - startCpu : -1, computed, inferred,
+            (long)width*height - computed - inferred, iterations, periodicitySaved.get(),
+            interior, max, startBytes >= 0 && bytes >= 0 ? Math.max(0, bytes - startBytes) : -1);
+        RenderMonitor.getMonitor().record(renderStats);
+    }
 
-    public void changeColors (int[] cSet,int cMode,int numReps)
+    /**
+     * addCounters adds what a worker's Orbit counted over its share
+     * of the render to the render's totals.
+     */
+    protected void addCounters(Orbit z)
     {
-        colorSet = cSet;         
-        colMode = cMode; 
-        numColors = colorSet.length;
-        colRepeats = numReps;
-        preMixColors = mixColorSet(); // re-mix the pre-mix
-        int totalPix = (width*height); 
-        /*int []*/ pix = new int [totalPix]; // new pixel array       
-        for (int i = 0; i < totalPix; i++)
-        {
+        periodicitySaved.addAndGet(z.skipped);
+        iterationsCounted.addAndGet(z.counted);
+        insideCounted.addAndGet(z.inside);
+        int m;
+        while ((m = maxEscaped.get()) < z.maxEscape && !maxEscaped.compareAndSet(m, z.maxEscape));
+    }
 
-        if (iterationData[i] < numIter) pix[i] =  // iteration hit escape val.
-        preMixColors [ iterationData [i] ];       // recolor pixel
-        else pix [i] = 255 << 24;                 // iteration didn't escape
+    /**
+     * pickIterations sets numIter for this frame. A guess from the zoom
+     * is the cap of a probe grid AUTO_PROBE_DIVISOR times coarser
+     * across and down, then numIter is the count all but AUTO_MISS of
+     * the probe points escaped by, plus AUTO_MARGIN, rounded up to a
+     * quarter octave so small moves keep the same cap. The colors are
+     * only mixed again when the cap changes.
+     *
+     * @throws CancellationException if a newer render cancelled this one
+     */
+    protected void pickIterations()
+    {
+        double depth = Math.max(0, Math.log10(zoom));
+        int guess = (int)Math.min(AUTO_MAX_ITERS, AUTO_MIN_ITERS * Math.pow(1 + depth, 1.5));
+        int probeCap = (int)Math.min(AUTO_MAX_ITERS, 4L * guess);
+        int pw = Math.max(8, width / AUTO_PROBE_DIVISOR);
+        int ph = Math.max(8, height / AUTO_PROBE_DIVISOR);
+        int [] data = probeIterations(pw, ph, probeCap);
+        int [] escaped = new int [data.length];
+        int m = 0;
+        int probed = 0;
+        for (int k = 0; k < data.length; k++) {
+            if (data[k] < 0) continue; // glitched, no count to trust
+            probed++;
+            if (data[k] < probeCap) escaped[m++] = data[k];
+        }
+        Arrays.sort(escaped, 0, m);
+        int allowed = (int)(AUTO_MISS * probed);
+        long cap = AUTO_MIN_ITERS;
+        if (m > allowed) {
+            cap = Math.max(cap, (long)Math.ceil((escaped[m - 1 - allowed] + 1) * AUTO_MARGIN));
+        }
+        long step = Math.max(1, Long.highestOneBit(cap) / 4);
+        cap = Math.min(AUTO_MAX_ITERS, (cap + step - 1) / step * step);
+        if (cap != numIter) {
+            numIter = (int)cap;
+            preMixColors = mixColorSet();
         }
-        // re-create the image
-        myImage = createImage(new MemoryImageSource(width,height, pix, 0,width));
-        System.gc();
     }
 
-
-
     /**
-     * The cycleColorsUp method rotates the color array to the right,
-     * wrapping around.
-     *
-     * @param c how many colors to shift
+     * probeIterations iterates a pw x ph grid over this frame straight
+     * through the kernels, at the precision the grid's spacing needs.
+     * Nothing of the frame is touched: no pixels, no tiles, no stats,
+     * no progress, no notifyMe.
      *
+     * @param cap the iteration cap of the probe
+     * @return the escape count of every grid point, cap if it never
+     * escaped, -1 if a deep zoom point glitched
+     * @throws CancellationException if a newer render cancelled this one
      */
-
-    public void cycleColorsUp (int c)
+    protected int [] probeIterations(int pw, int ph, int cap)
     {
-        int nCyc =c;
-        temp= new int [nCyc];
-        for (int i = 0; i < nCyc; i++) {
-            temp [i] = preMixColors [i];
+        double xStep, yStep;
+        if (aspectR >= 1) {
+            xStep = 4.0/(pw*zoom);
+            yStep = 4.0/(ph*zoom*aspectR);
+        } else {
+            xStep = 4.0*aspectR/(pw*zoom);
+            yStep = 4.0/(ph*zoom);
         }
-        for (int i = 0; i < numIter-nCyc ; i++) {
-            preMixColors [i] = preMixColors [(i+nCyc)];         
-       }
-        for (int i = 0; i < nCyc; i++) {
-            preMixColors [numIter/*-1*/-nCyc+i] = temp [i];
+        double pixel = Math.min(xStep, yStep);
+        PerturbationEngine probeDeep = null;
+        DoubleDoubleKernel probeDD = null;
+        if (precisionMode == PRECISION_PERTURBATION
+            || (precisionMode == PRECISION_AUTO && needsPerturbation(pixel))) {
+            probeDeep = new PerturbationEngine(deepX, deepY, pw/2.0, ph/2.0, xStep, yStep,
+                power, isMandlebrot, juliaX, juliaY, cap);
+            probeDeep.setCancelCheck(cancelCheck);
+            probeDeep.setReference(pw/2.0, ph/2.0);
+        } else if (precisionMode == PRECISION_DOUBLE_DOUBLE
+            || (precisionMode == PRECISION_AUTO && needsDeepZoom(pixel))) {
+            probeDD = new DoubleDoubleKernel(power);
         }
-        int totalPix = (width*height);
-        /*int []*/ pix = new int [totalPix];       
-        for (int i = 0; i < totalPix; i++)
-        {
-        if (iterationData[i] < numIter) pix[i] = 
-        preMixColors [ iterationData [i] ];
-        else pix [i] = 255 << 24;    
+        EscapeKernel probeKernel = EscapeKernel.forPower(power);
+        Orbit z = new Orbit();
+        z.checkPeriod = probeDeep == null && probeDD == null; // inside points stop early
+        z.periodEps = pixel * PERIOD_TOLERANCE;
+        boolean bulbs = z.checkPeriod && power == 2 && isMandlebrot;
+        int [] data = new int [pw * ph];
+        for (int y = 0; y < ph; y++) {
+            checkCancelled();
+            double stepY = y*yStep;
+            double cy = -stepY + uLy;
+            double cyLo = DoubleDoubleKernel.sumError(-stepY, uLy, cy)
+                - Math.fma(y, yStep, -stepY) + uLyLo;
+            for (int x = 0; x < pw; x++) {
+                double stepX = x*xStep;
+                double cx = stepX + uLx;
+                int i;
+                if (probeDeep != null) {
+                    i = probeDeep.iterate(x, y, z);
+                    if (z.glitched) i = -1;
+                } else if (probeDD != null) {
+                    double cxLo = DoubleDoubleKernel.sumError(stepX, uLx, cx)
+                        + Math.fma(x, xStep, -stepX) + uLxLo;
+                    if (isMandlebrot) {
+                        i = probeDD.iterate(0, 0, 0, 0, cx, cxLo, cy, cyLo, cap, z);
+                    } else {
+                        i = probeDD.iterate(cx, cxLo, cy, cyLo, juliaX, 0, juliaY, 0, cap, z);
+                    }
+                } else if (!isMandlebrot) {
+                    i = probeKernel.iterate(cx, cy, juliaX, juliaY, cap, z);
+                } else if (bulbs && inMainBulbs(cx, cy)) {
+                    i = cap;
+                } else {
+                    i = probeKernel.iterate(0, 0, cx, cy, cap, z);
+                }
+                data[y*pw + x] = i;
+            }
         }
-        // regenerate image    
-        myImage = createImage(new MemoryImageSource(width,height, pix, 0,width));        
-        this.repaint();
-        v.notifyMe();
-        System.gc();
+        return data;
     }
 
-    public void cycleColorsDown (int c)
+    /**
+     * renderPixels fills pix and iterationData with whichever render
+     * mode this render uses.
+     *
+     * @param reuse true to copy the pixels the last render has in common
+     * with this one (full scan renders only)
+     * @throws CancellationException if a newer render cancelled this one
+     */
+    protected void renderPixels(boolean reuse)
     {
-        int nCyc =  c;
-        temp= new int [nCyc];
-        for (int i = 0; i < nCyc ; i++) {
-            temp [i] = preMixColors [numIter-nCyc+i-1];
+        if (deep != null)
+        {
+            // deep zoom: every pixel against reference orbits, no guessing
+            reusePixels(reuse);
+            renderDeep();
         }
-        for (int i = numIter-1 ; i > nCyc-1 ; i--) {
-            preMixColors [i] = preMixColors [(i-nCyc)];         
-       }
-        for (int i = 0; i < nCyc; i++) {
-            preMixColors [i] = temp [i];
+        else if (useSubdivision && colorsFromIterations()
+                 && width > 2 && height > 2)
+        {
+            // fill rectangles with uniform borders, split the rest
+            renderSubdivided();
         }
-        int totalPix = (width*height);
-        /*int []*/ pix = new int [totalPix];       
-        for (int i = 0; i < totalPix; i++)
+        else if (useBoundaryTrace && colorsFromIterations())
         {
-            if (iterationData[i] < numIter) pix[i] = 
-            preMixColors [ iterationData [i] ];
-            else pix [i] = 255 << 24;    
+            // trace the band outlines of each tile, fill the inside
+            traceNow = true;
+            traced = new byte [width * height];
+            renderTiles();
         }
-        // regenerate image    
-        myImage = createImage(new MemoryImageSource(width,height, pix, 0,width));        
-        this.repaint();
+        else if (distanceKernel != null)
+        {
+            // fill the disks around exterior pixels that are clear of the set
+            reusePixels(reuse);
+            renderTiles();
+        }
+        else if (!useSpeedPass && useProgressive && rowKernel == null)
+        {
+            // coarse levels first, each one shown as soon as it's done
+            reusePixels(reuse);
+            renderProgressive();
+        }
+        else if (!useSpeedPass)
+        {
+            // no SpeedPass: calculate every pixel, one tile per task
+            reusePixels(reuse);
+            renderTiles();
+        }
+        else
+        {
+            // SpeedPass: every other pixel, then guess the ones between
+            renderSpeedPass();
+        }
+    }
+
+    /**
+     * renderSpeedPass is the two pass "guessing mode". Pass one
+     * computes every other pixel, staggered row to row like a
+     * checkerboard, pass two takes the value of the four neighbors of
+     * each pixel in between when they all agree and computes it when
+     * they don't. Both passes color through colorPixel, so every
+     * pixel and inner color scheme and smooth colors come out as the
+     * full scan has them, apart from the guesses. The edge pixels of
+     * pass two have no four neighbors and are always computed.
+     *
+     * @throws CancellationException if a newer render cancelled this one
+     */
+    protected void renderSpeedPass()
+    {
+        Orbit z = newOrbit(); // final z of the last iterated pixel
+
+        // Pass-One:
+        // draw every-other pixel, alternately
+        // staggering every-other row            
+
+        FractalEvents.SpeedPass passEvent = new FractalEvents.SpeedPass();
+        passEvent.begin();
+        long visited = 0; // pixels the pass iterated or guessed
+        for (int y = 0; y < height; y++) {
+            checkCancelled();
+            for (int x = y % 2; x < width; x += 2) {
+                computePixel(x, y, z);
+                visited++;
+            }
+            int percent = (int)((y+1)/(double)height*100+0.5); 
+            setProgress("Calculating Image--Pass One: "+percent+"%  complete ");             
+        }
+        passEvent.pass = 1;
+        commitEvent(passEvent, visited);
+        setProgress("Pass Two: 0% complete");
         v.notifyMe();
-        System.gc();
+
+        // Pass Two:
+        // draw the pixels in between checking 4 immediate (North, East,
+        // South, West) neighbors for equality. If so, steal
+        // value and skip iterations
+
+        passEvent = new FractalEvents.SpeedPass();
+        passEvent.begin();
+        visited = 0;
+        long guessed = 0; // pixels that took a neighbor's value
+        for (int y = 0; y < height; y++) {
+            checkCancelled();
+            boolean edgeRow = y == 0 || y == height - 1;
+            for (int x = 1 - y % 2; x < width; x += 2) {
+                int index = y*width + x;
+                if (!edgeRow && x > 0 && x < width - 1 && neighborsAgree(index)) {
+                    iterationData[index] = iterationData[index+1];
+                    pix[index] = pix[index+1];
+                    if (smoothData != null) smoothData[index] = smoothData[index+1];
+                    guessed++;
+                } else {
+                    computePixel(x, y, z);
+                }
+                visited++;
+            }
+            int percent = (int)((y+1)/(double)height*100+0.5); 
+            setProgress("Pass Two: " + percent + "% complete ");             
+        }
+        pixelsFilled.addAndGet(guessed);
+        addCounters(z);
+        passEvent.pass = 2;
+        passEvent.guessed = guessed;
+        commitEvent(passEvent, visited);
     }
-    public Image getImage()
+
+    /**
+     * neighborsAgree checks if the four neighbors of a pixel off the
+     * edge have the same iterationData value and the same color, so
+     * the pixel can take them too.
+     */
+    protected boolean neighborsAgree(int index)
     {
-        return myImage;
+        int data = iterationData[index+1];
+        int val = pix[index+1];
+        return data == iterationData[index-1] && data == iterationData[index-width]
+            && data == iterationData[index+width] && val == pix[index-1]
+            && val == pix[index-width] && val == pix[index+width];
     }
-    public void setPower ( int p, int w, int h) {
-        power = p;
-        zoom = 1; 
-        xCenter = 0;
-        yCenter = 0;
-        redraw(w, h, 0,0,numIter,1);
+
+    /**
+     * reusePixels fills what it can of this render without iterating,
+     * from the last render if reuse is set and from the tileCache.
+     * Only the exact render modes call it, so only their tiles get
+     * cached.
+     */
+    protected void reusePixels(boolean reuse)
+    {
+        tilesExact = true;
+        if (reuse) reuseLastRender();
+        loadCachedTiles();
     }
-    public void setIterations( int iters ) {
-        numIter = iters;
-        preMixColors = mixColorSet();
-        redraw(width,height,xCenter,yCenter,numIter,zoom);
+
+    /**
+     * reuseLastRender finds the pixels of this render that sit on a
+     * sample point of the last complete render (a pan by whole pixels
+     * or a zoom by a power of two lines most of them up), copies their
+     * iteration values and marks them in reused so the renderers skip
+     * them. Positions are worked out from the BigDecimal centers, so
+     * this holds at deep zooms too.
+     */
+    protected void reuseLastRender()
+    {
+        if (lastData == null || !renderKey().equals(lastKey)) return;
+        double sx = xZoomFactor / lastXStep;
+        double sy = yZoomFactor / lastYStep;
+        double fx = deepX.subtract(lastX).doubleValue() / lastXStep + lastWidth/2.0;
+        double fy = lastHeight/2.0 - deepY.subtract(lastY).doubleValue() / lastYStep;
+        int [] col = new int [width]; // old column under each new one, -1 if none
+        int [] row = new int [height];
+        boolean any = false;
+        for (int x = 0; x < width; x++) {
+            col[x] = gridIndex(fx + (x - width/2.0)*sx, lastWidth);
+            any |= col[x] >= 0;
+        }
+        if (!any) return;
+        any = false;
+        for (int y = 0; y < height; y++) {
+            row[y] = gridIndex(fy + (y - height/2.0)*sy, lastHeight);
+            any |= row[y] >= 0;
+        }
+        if (!any) return;
+        reused = new boolean [width * height];
+        for (int y = 0; y < height; y++) {
+            if (row[y] < 0) continue;
+            for (int x = 0; x < width; x++) {
+                if (col[x] < 0) continue;
+                int index = y*width + x;
+                iterationData[index] = lastData[row[y]*lastWidth + col[x]];
+                if (smoothData != null) {
+                    smoothData[index] = lastSmooth[row[y]*lastWidth + col[x]];
+                }
+                pix[index] = colorOf(index);
+                reused[index] = true;
+                reusedPixels++;
+            }
+        }
     }
-    public void setJulia (double juliaX, double juliaY, double centerX, 
-                          double centerY, double zoomNew, int widthNew,
-                          int heightNew, int newIterates) 
+
+    /**
+     * @return the whole grid index f rounds to, -1 if f is off the
+     * grid or outside 0 to n-1
+     */
+    protected static int gridIndex(double f, int n)
     {
-        isMandlebrot = false;
-        this.juliaX = juliaX;
-        this.juliaY = juliaY;
-        redraw ( widthNew, heightNew, centerX, centerY, newIterates,
-                 zoomNew);
-    }   
-    public void setMand ( double centerX, double centerY, double zoomNew,
-                          int widthNew, int heightNew, int newIterates) 
+        long j = Math.round(f);
+        if (Math.abs(f - j) > REUSE_TOLERANCE || j < 0 || j >= n) return -1;
+        return (int)j;
+    }
+
+    /**
+     * keepForReuse remembers the render that just finished, for
+     * reuseLastRender.
+     */
+    protected void keepForReuse()
     {
-        isMandlebrot = true;
-        preMixColors = mixColorSet ();
-        redraw ( widthNew, heightNew,centerX, centerY, newIterates,
-                 zoomNew);
-    }   
-    public void setFractSize( int s ) {
-        redraw(nPix,xCenter,yCenter,zoom,numIter,useSpeedPass);
-        
+        lastData = iterationData;
+        lastSmooth = smoothData;
+        lastWidth = width;
+        lastHeight = height;
+        lastX = deepX;
+        lastY = deepY;
+        lastXStep = xZoomFactor;
+        lastYStep = yZoomFactor;
+        lastKey = renderKey();
     }
 
-    public void redraw ( int w, int h,double xAtCenter,
-    double yAtCenter, int numIterates,double fractZoom)
-    { 
-        width = w;
-        height = h;
-        aspectR = (double)width/(double)height;
-        setBounds(0, 0 ,width, height);
-        zoom = fractZoom; 
-        xCenter = xAtCenter;
-        yCenter = yAtCenter;
-        if (aspectR >= 1) {
-            uLx = xCenter - 2.0/zoom; // transform center to upper left corner           
-            uLy = yCenter + 2.0/(zoom*aspectR);
-            //System.out.println("redraw Fractal= uLx= "+ uLx);
-            //System.out.println("redraw Fractal= uLy= "+ uLy);
-            //     "       "     "   "     "    "
-        } else {
-            uLx = xCenter - (2.0*aspectR)/zoom; // transform center to upper left corner
-            uLy = yCenter + 2.0/zoom; //     "       "     "   "     "    "
-            //System.out.println("redraw Fractal= uLx= "+ uLx);
-            //System.out.println("redraw Fractal= uLy= "+ uLy);
+    /**
+     * renderKey sums up everything besides the grid that an
+     * iterationData value depends on. Renders with the same key
+     * give the same value at the same point.
+     */
+    protected String renderKey()
+    {
+        return power + " " + isMandlebrot + " " + juliaX + " " + juliaY + " "
+            + numIter + " " + pixelColorScheme + " " + innerPixelColorScheme + " "
+            + (deep != null) + " " + (ddKernel != null) + " " + (smoothData != null) + " "
+            + (distanceKernel != null);
+    }
+
+    /**
+     * tileLattice places this render on the lattice of all pixels its
+     * size, anchored at 0 in the complex plane: pixel x, y is lattice
+     * column tileCol + x and row tileRow + y (rows run down). Renders
+     * only share a lattice if they also sit the same fraction of a
+     * pixel off it. The tileCache holds the TILE_SIZE squares of the
+     * lattice, so revisits and whole pixel pans find them whatever the
+     * frame size.
+     */
+    protected void tileLattice()
+    {
+        tileGrid = null;
+        if (!useTileCache) return;
+        MathContext mc = new MathContext(30 + (int)Math.max(0, Math.log10(zoom)));
+        BigDecimal qx = deepX.divide(new BigDecimal(xZoomFactor), mc)
+            .subtract(new BigDecimal(width/2.0));
+        BigDecimal qy = deepY.negate().divide(new BigDecimal(yZoomFactor), mc)
+            .subtract(new BigDecimal(height/2.0));
+        BigDecimal fx = qx.setScale(0, RoundingMode.FLOOR);
+        BigDecimal fy = qy.setScale(0, RoundingMode.FLOOR);
+        long px = Math.round(qx.subtract(fx).doubleValue() / REUSE_TOLERANCE);
+        long py = Math.round(qy.subtract(fy).doubleValue() / REUSE_TOLERANCE);
+        tileCol = fx.toBigInteger();
+        tileRow = fy.toBigInteger();
+        long whole = Math.round(1 / REUSE_TOLERANCE);
+        if (px == whole) {
+            px = 0; // just short of the next column
+            tileCol = tileCol.add(BigInteger.ONE);
         }
-        if ( numIter != numIterates) {            
-            numIter = numIterates;
-            preMixColors = mixColorSet ();            
+        if (py == whole) {
+            py = 0;
+            tileRow = tileRow.add(BigInteger.ONE);
         }
-        yCoords = new double [height];
-        xCoords = new double [width];
-        //System.out.println("redraw Fractal= zoom= "+ zoom);
-        iterationData = new int [height * width]; // store
-        generateImage();
-         v.notifyMe();
+        tileGrid = xZoomFactor + " " + yZoomFactor + " " + px + " " + py;
     }
-    
 
-    public void setSpeedPass (boolean useSpeedPass ) {
-        this.useSpeedPass = useSpeedPass;
+    /**
+     * @return the tileCache key of the lattice tile whose top left
+     * corner is at pixel tx, ty of this render
+     */
+    protected String tileKey(String prefix, int tx, int ty)
+    {
+        BigInteger size = BigInteger.valueOf(TILE_SIZE);
+        return prefix + tileCol.add(BigInteger.valueOf(tx)).divide(size) + " "
+            + tileRow.add(BigInteger.valueOf(ty)).divide(size);
     }
 
-    public void loadGradient ( int [] colors ) {
-        colorSet = colors;
+    /**
+     * @return pixel column (or row) of the first lattice tile corner
+     * at or left of (above) 0, given the lattice column (row) of 0
+     */
+    protected static int firstTile(BigInteger start)
+    {
+        return -start.mod(BigInteger.valueOf(TILE_SIZE)).intValue();
     }
-    
-    public void setPixelScheme ( int mode ) {
-        pixelColorScheme = mode;
-        redraw(width,height,xCenter,yCenter,numIter,zoom);
+
+    /**
+     * loadCachedTiles copies the lattice tiles the tileCache has for
+     * this render into iterationData, smoothData and pix, and marks
+     * them in reused so the renderers skip them. Tiles the last render
+     * already gave all their pixels aren't looked up.
+     */
+    protected void loadCachedTiles()
+    {
+        if (tileGrid == null) return;
+        String prefix = renderKey() + " " + tileGrid + " ";
+        for (int ty = firstTile(tileRow); ty < height; ty += TILE_SIZE) {
+            for (int tx = firstTile(tileCol); tx < width; tx += TILE_SIZE) {
+                int x0 = Math.max(0, tx);
+                int y0 = Math.max(0, ty);
+                int x1 = Math.min(width, tx + TILE_SIZE);
+                int y1 = Math.min(height, ty + TILE_SIZE);
+                if (reused != null && allReused(x0, y0, x1, y1)) continue;
+                TileCache.Tile t = tileCache.get(tileKey(prefix, tx, ty),
+                    x0 - tx, y0 - ty, x1 - x0, y1 - y0);
+                if (t == null) continue;
+                if (reused == null) reused = new boolean [width * height];
+                for (int y = y0; y < y1; y++) {
+                    int k = (y - ty - t.y)*t.w + x0 - tx - t.x;
+                    for (int x = x0; x < x1; x++, k++) {
+                        int index = y*width + x;
+                        iterationData[index] = t.data[k];
+                        if (smoothData != null) smoothData[index] = t.smooth[k];
+                        pix[index] = colorOf(index);
+                        reused[index] = true;
+                    }
+                }
+                cachedTiles++;
+            }
+        }
     }
-    
+
+    /**
+     * @return true if every pixel of x0,y0 to x1-1,y1-1 is marked reused
+     */
+    protected boolean allReused(int x0, int y0, int x1, int y1)
+    {
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (!reused[y*width + x]) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * storeTiles gives the lattice tiles of a finished exact render to
+     * the tileCache, all but the ones it already holds as much of.
+     */
+    protected void storeTiles()
+    {
+        if (tileGrid == null || !tilesExact) return;
+        String prefix = renderKey() + " " + tileGrid + " ";
+        for (int ty = firstTile(tileRow); ty < height; ty += TILE_SIZE) {
+            for (int tx = firstTile(tileCol); tx < width; tx += TILE_SIZE) {
+                int x0 = Math.max(0, tx);
+                int y0 = Math.max(0, ty);
+                int w = Math.min(width, tx + TILE_SIZE) - x0;
+                int h = Math.min(height, ty + TILE_SIZE) - y0;
+                String key = tileKey(prefix, tx, ty);
+                TileCache.Tile old = tileCache.peek(key);
+                if (old != null && old.covers(x0 - tx, y0 - ty, w, h)) continue;
+                int [] data = new int [w * h];
+                float [] smooth = smoothData != null ? new float [w * h] : null;
+                for (int y = 0; y < h; y++) {
+                    System.arraycopy(iterationData, (y0 + y)*width + x0, data, y*w, w);
+                    if (smooth != null) {
+                        System.arraycopy(smoothData, (y0 + y)*width + x0, smooth, y*w, w);
+                    }
+                }
+                tileCache.put(key, new TileCache.Tile(x0 - tx, y0 - ty, w, h, data, smooth, key));
+            }
+        }
+    }
+
+    /**
+     * @return pixels the last render copied from the one before
+     */
+    public int getReusedPixels() {
+        return reusedPixels;
+    }
+
+    /**
+     * keepOrbits sets up orbitX and orbitY to catch the final z of every
+     * pixel that doesn't escape, if this render can be resumed. That
+     * takes iterationData holding plain iteration counts, so the
+     * iteration based colors with a black inside, and doubles or
+     * double-double (a perturbation orbit is tied to its reference).
+     */
+    protected void keepOrbits()
+    {
+        orbitX = null;
+        orbitY = null;
+        orbitXLo = null;
+        orbitYLo = null;
+        if (deep != null || !countsInData()) return;
+        orbitX = new double [width * height];
+        orbitY = new double [width * height];
+        Arrays.fill(orbitX, Double.NaN); // filled or copied pixels start over
+        if (ddKernel != null) {
+            orbitXLo = new double [width * height];
+            orbitYLo = new double [width * height];
+        }
+    }
+
+    /**
+     * keepForResume packs the final z of the pixels that never escaped
+     * into resumeIndex and resumeZ, and lets the full size orbit arrays go.
+     */
+    protected void keepForResume()
+    {
+        if (orbitX == null) return;
+        int stride = orbitXLo != null ? 4 : 2;
+        int count = 0;
+        for (int i = 0; i < iterationData.length; i++) {
+            if (iterationData[i] >= numIter) count++;
+        }
+        resumeIndex = new int [count];
+        resumeZ = new double [count * stride];
+        count = 0;
+        for (int i = 0; i < iterationData.length; i++) {
+            if (iterationData[i] < numIter) continue;
+            resumeIndex[count] = i;
+            resumeZ[count*stride] = orbitX[i];
+            resumeZ[count*stride + 1] = orbitY[i];
+            if (stride == 4) {
+                resumeZ[count*stride + 2] = orbitXLo[i];
+                resumeZ[count*stride + 3] = orbitYLo[i];
+            }
+            count++;
+        }
+        resumeIter = numIter;
+        orbitX = null;
+        orbitY = null;
+        orbitXLo = null;
+        orbitYLo = null;
+    }
+
+    /**
+     * resumeIterations changes the iteration cap of the finished frame
+     * without starting it over. Pixels that escaped keep their count,
+     * so a lower cap only recolors and a higher one only carries on
+     * the pixels in resumeIndex from the z they stopped at.
+     *
+     * @param iters the new iteration cap
+     */
+    protected void resumeIterations(int iters)
+    {
+        long startT = System.nanoTime();
+        long startCpu = RenderStats.processCpuNanos();
+        long startBytes = RenderStats.allocatedBytes();
+        long resumed = 0; // pixels carried on
+        long iterations = 0, interior = 0;
+        int max = 0;
+        if (!inRenderTask) renderGen = generation.get();
+        numIter = iters;
+        preMixColors = mixColorSet();
+        boolean raised = numIter > resumeIter;
+        if (raised) {
+            beginRender();
+            openProgress();
+            setProgress("Resuming " + resumeIndex.length + " pixels to "
+                        + numIter + " iterations");
+            int [] counts = new int [resumeIndex.length];
+            double [] z = resumeZ.clone();
+            try {
+                renderPool.invoke(new ResumeTask(counts, z, 0, counts.length));
+            } catch (CancellationException ex) {
+                // a newer render took over, this frame can't be resumed now
+                resumeIndex = null;
+                resumeZ = null;
+                closeProgress();
+                return;
+            }
+            int stride = z.length / Math.max(counts.length, 1);
+            int count = 0;
+            for (int k = 0; k < counts.length; k++) {
+                int i = resumeIndex[k];
+                iterationData[i] = counts[k];
+                // a NaN z (filled, guessed, reused or cached) was iterated from 0
+                int from = Double.isNaN(resumeZ[k*stride]) ? 0 : resumeIter;
+                iterations += Math.min(counts[k], numIter) - from;
+                if (counts[k] < numIter) max = Math.max(max, counts[k]);
+                if (counts[k] >= numIter) {
+                    count++;
+                } else if (smoothData != null) {
+                    smoothData[i] = smoothIteration(i % width, i / width, counts[k],
+                                                    z[k*stride], z[k*stride + 1]);
+                }
+            }
+            int [] index = new int [count];
+            double [] left = new double [count * stride];
+            count = 0;
+            for (int k = 0; k < counts.length; k++) {
+                if (counts[k] < numIter) continue;
+                index[count] = resumeIndex[k];
+                System.arraycopy(z, k*stride, left, count*stride, stride);
+                count++;
+            }
+            resumed = counts.length;
+            interior = count;
+            resumeIndex = index;
+            resumeZ = left;
+            resumeIter = numIter;
+            try {
+                antiAlias(); // the edges moved with the cap, sample them again
+            } catch (CancellationException ex) {
+                aaSlot = null;
+                closeProgress();
+                return;
+            }
+            closeProgress();
+        }
+        synchronized (recolorLock) {
+            if (raised) renderComplete = true;
+            takePendingCycles(); // the recolor below shows them
+            recolor();
+        }
+        keepForReuse();
+        storeTiles(); // a new cap is a new key
+        myImage = makeImage();
+        publishStats(startT, startCpu, startBytes, resumed, 0, iterations, interior, max);
+        v.notifyMe();
+    }
+
+    /**
+     * resumeRun carries on resumeIndex entries first to last-1 up to
+     * numIter, leaving each one's total count in counts and its final
+     * z in z. Pixels without a kept z are iterated from the start.
+     */
+    protected void resumeRun(int first, int last, int [] counts, double [] z)
+    {
+        int stride = ddKernel != null ? 4 : 2;
+        int more = numIter - resumeIter;
+        Orbit o = newOrbit();
+        RowKernel rk = stride == 2 ? rowKernel : null;
+        double [] rzx = null, rzy = null, rcx = null, rcy = null;
+        boolean [] done = null;
+        int [] iters = null;
+        if (rk != null) {
+            rzx = new double [TILE_SIZE];
+            rzy = new double [TILE_SIZE];
+            rcx = new double [TILE_SIZE];
+            rcy = new double [TILE_SIZE];
+            done = new boolean [TILE_SIZE];
+            iters = new int [TILE_SIZE];
+        }
+        for (int k0 = first; k0 < last; k0 += TILE_SIZE) {
+            checkCancelled();
+            int count = Math.min(TILE_SIZE, last - k0);
+            for (int j = 0; j < count; j++) {
+                int k = k0 + j;
+                int index = resumeIndex[k];
+                int x = index % width;
+                int y = index / width;
+                double zx = z[k*stride];
+                double zy = z[k*stride + 1];
+                double cx = isMandlebrot ? xCoords[x] : juliaX;
+                double cy = isMandlebrot ? yCoords[y] : juliaY;
+                if (rk != null) done[j] = true;
+                if (Double.isNaN(zx)) {
+                    counts[k] = iteratePoint(x, y, o);
+                } else if (useBulbTest && inMainBulbs(cx, cy)) {
+                    counts[k] = numIter;
+                    continue;
+                } else if (rk != null) {
+                    done[j] = false;
+                    rzx[j] = zx;
+                    rzy[j] = zy;
+                    rcx[j] = cx;
+                    rcy[j] = cy;
+                    continue;
+                } else if (stride == 4) {
+                    double cxLo = isMandlebrot ? xCoordsLo[x] : 0;
+                    double cyLo = isMandlebrot ? yCoordsLo[y] : 0;
+                    counts[k] = resumeIter + ddKernel.iterate(zx, z[k*stride + 2],
+                        zy, z[k*stride + 3], cx, cxLo, cy, cyLo, more, o);
+                    z[k*stride + 2] = o.zxLo;
+                    z[k*stride + 3] = o.zyLo;
+                } else {
+                    counts[k] = resumeIter + kernel.iterate(zx, zy, cx, cy, more, o);
+                }
+                z[k*stride] = o.zx;
+                z[k*stride + 1] = o.zy;
+                if (stride == 4 && Double.isNaN(zx)) {
+                    z[k*stride + 2] = o.zxLo;
+                    z[k*stride + 3] = o.zyLo;
+                }
+            }
+            if (rk == null) continue;
+            rk.iterateRow(rzx, rzy, rcx, rcy, count, power, more, done, iters);
+            for (int j = 0; j < count; j++) {
+                if (done[j]) continue;
+                int k = k0 + j;
+                counts[k] = resumeIter + iters[j];
+                z[k*stride] = rzx[j];
+                z[k*stride + 1] = rzy[j];
+            }
+        }
+        addCounters(o);
+    }
+
+    /**
+     * renderTiles splits the frame into TILE_SIZE square tiles and
+     * renders them all on the renderPool, returning once every
+     * tile has been written to pix and iterationData.
+     */
+    protected void renderTiles()
+    {
+        tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+        numTiles = tilesAcross * tilesDown;
+        tilesDone = new AtomicInteger(0);
+        lastPercent = -1;
+        tileRuns = 1;
+        levelStep = 0;
+        renderPool.invoke(new TileTask(0, numTiles));
+    }
+
+    /**
+     * renderProgressive renders the tiles in levels: every
+     * PROGRESSIVE_STEP-th pixel across and down (1/16 of the frame),
+     * then every other one (1/4), then the rest. A level only
+     * iterates the pixels the levels before it haven't, and each
+     * coarse level is shown blown up to full size as soon as it is
+     * done.
+     */
+    protected void renderProgressive()
+    {
+        tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+        numTiles = tilesAcross * tilesDown;
+        tilesDone = new AtomicInteger(0);
+        lastPercent = -1;
+        tileRuns = 0;
+        for (int step = PROGRESSIVE_STEP; step >= 1; step /= 2) tileRuns++;
+        for (levelStep = PROGRESSIVE_STEP; levelStep >= 1; levelStep /= 2) {
+            renderPool.invoke(new TileTask(0, numTiles));
+            if (levelStep > 1) showPix();
+        }
+        levelStep = 0;
+    }
+
+    /**
+     * renderTileLevel computes one level of a progressive tile, the
+     * pixels on a grid of levelStep that aren't on the grid of the
+     * level before, and fills the levelStep square below each grid
+     * pixel with its color so the level can be shown.
+     */
+    protected void renderTileLevel(int x0, int y0, int x1, int y1, Orbit z)
+    {
+        int step = levelStep;
+        for (int y = y0; y < y1; y += step) {
+            checkCancelled();
+            for (int x = x0; x < x1; x += step) {
+                if (step < PROGRESSIVE_STEP && x % (2*step) == 0 && y % (2*step) == 0) {
+                    continue; // done by the level before
+                }
+                if (reused != null && reused[y*width + x]) continue;
+                computePixel(x, y, z);
+            }
+        }
+        if (step == 1) return;
+        for (int y = y0; y < y1; y += step) {
+            for (int x = x0; x < x1; x += step) {
+                int color = pix[y*width + x];
+                for (int by = y; by < Math.min(y + step, y1); by++) {
+                    for (int bx = x; bx < Math.min(x + step, x1); bx++) {
+                        if (reused == null || !reused[by*width + bx]) {
+                            pix[by*width + bx] = color;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * showPix makes an Image of pix as it is now and asks the event
+     * thread to paint it, the render thread never paints itself.
+     */
+    protected void showPix()
+    {
+        myImage = makeImage();
+        repaint();
+        v.notifyMe();
+    }
+
+    /**
+     * renderSubdivided renders by Mariani-Silver rectangle subdivision.
+     * The frame is cut into TILE_SIZE tiles and the tile borders are
+     * computed first, so a set smaller than the frame can't hide
+     * inside one uniform outer border. Then SubdivideTasks fill every
+     * rectangle whose border escaped at one iteration count and split
+     * the others in half across the long side, until they get too
+     * thin to be worth it and are computed pixel by pixel.
+     */
+    protected void renderSubdivided()
+    {
+        lastPercent = -1;
+        int [] xs = gridLines(width);
+        int [] ys = gridLines(height);
+        boolean [] onGrid = new boolean [width * height];
+        for (int k = 0; k < ys.length; k++) {
+            Arrays.fill(onGrid, ys[k]*width, (ys[k] + 1)*width, true);
+        }
+        for (int k = 0; k < xs.length; k++) {
+            for (int y = 0; y < height; y++) onGrid[y*width + xs[k]] = true;
+        }
+        int count = 0;
+        for (int i = 0; i < onGrid.length; i++) {
+            if (onGrid[i]) count++;
+        }
+        int [] list = new int [count];
+        count = 0;
+        for (int i = 0; i < onGrid.length; i++) {
+            if (onGrid[i]) list[count++] = i;
+        }
+        renderPool.invoke(new PixelListTask(list, 0, list.length));
+        pixelsComputed.addAndGet(list.length);
+        java.util.List<SubdivideTask> tasks = new ArrayList<SubdivideTask>(); // java.awt has a List too
+        for (int j = 0; j + 1 < ys.length; j++) {
+            for (int k = 0; k + 1 < xs.length; k++) {
+                tasks.add(new SubdivideTask(xs[k], ys[j], xs[k+1], ys[j+1]));
+            }
+        }
+        renderPool.invoke(new RecursiveAction() {
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * @return the tile edges across a side of n pixels, 0 to n-1
+     */
+    protected static int [] gridLines(int n)
+    {
+        int lines = (n - 2) / TILE_SIZE + 2;
+        int [] at = new int [lines];
+        for (int k = 0; k < lines - 1; k++) at[k] = k * TILE_SIZE;
+        at[lines - 1] = n - 1;
+        return at;
+    }
+
+    /**
+     * colorsFromIterations checks if a pixel's color depends on its
+     * iteration count alone, which subdivision needs to fill a
+     * rectangle from its border.
+     */
+    protected boolean colorsFromIterations()
+    {
+        return countsInData() && smoothData == null;
+    }
+
+    /**
+     * countsInData checks if iterationData holds plain iteration
+     * counts, numIter or more for pixels that never escaped.
+     */
+    protected boolean countsInData()
+    {
+        return pixelColorScheme == PIXEL_ITERATION_BASED
+               && innerPixelColorScheme == INNERCOLOR_BLACK;
+    }
+
+    /**
+     * computePixel iterates and colors one pixel.
+     */
+    protected void computePixel(int x, int y, Orbit z)
+    {
+        int i = iteratePoint(x, y, z);
+        colorPixel(x, y, y*width + x, i, z.zx, z.zy);
+    }
+
+    /**
+     * Shows the percent of the frame subdivision has filled or computed.
+     */
+    protected void subdivisionProgress()
+    {
+        long done = pixelsFilled.get() + pixelsComputed.get();
+        int percent = (int)(done/(double)(width*height)*100+0.5);
+        if (percent != lastPercent) {
+            lastPercent = percent;
+            setProgress("Calculating image: " + percent + "% complete ");
+        }
+    }
+
+    /**
+     * renderDeep renders a perturbation frame: every tile against a
+     * reference orbit from the center, then the glitched pixels again
+     * against a new reference taken inside the glitch, until none are
+     * left or MAX_REFERENCES orbits have been used.
+     */
+    protected void renderDeep()
+    {
+        glitched = new boolean [width * height];
+        deep.setReference(width/2.0, height/2.0);
+        renderTiles();
+        int [] list = glitchedList();
+        while (list.length > 0 && deep.getReferenceCount() < MAX_REFERENCES) {
+            checkCancelled();
+            int ref = pickReference(list);
+            deep.setReference(ref % width, ref / width);
+            setProgress("Fixing " + list.length + " glitched pixels, reference "
+                        + deep.getReferenceCount());
+            renderPool.invoke(new PixelListTask(list, 0, list.length));
+            list = glitchedList();
+        }
+        glitchedPixels = list.length;
+    }
+
+    /**
+     * @return the indices of the glitched pixels
+     */
+    protected int [] glitchedList()
+    {
+        int count = 0;
+        for (int i = 0; i < glitched.length; i++) {
+            if (glitched[i]) count++;
+        }
+        int [] list = new int [count];
+        count = 0;
+        for (int i = 0; i < glitched.length; i++) {
+            if (glitched[i]) list[count++] = i;
+        }
+        return list;
+    }
+
+    /**
+     * pickReference takes the glitched pixel closest to the middle
+     * of all glitched pixels as the next reference point.
+     *
+     * @return index of the pixel to use
+     */
+    protected int pickReference(int [] list)
+    {
+        double sx = 0;
+        double sy = 0;
+        for (int i = 0; i < list.length; i++) {
+            sx += list[i] % width;
+            sy += list[i] / width;
+        }
+        sx /= list.length;
+        sy /= list.length;
+        int best = list[0];
+        double bestDist = Double.MAX_VALUE;
+        for (int i = 0; i < list.length; i++) {
+            double dx = list[i] % width - sx;
+            double dy = list[i] / width - sy;
+            if (dx*dx + dy*dy < bestDist) {
+                bestDist = dx*dx + dy*dy;
+                best = list[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * needsDeepZoom checks if a pixel has shrunk to a few ulps of the
+     * coordinates in the frame, where doubles turn blocky.
+     */
+    protected boolean needsDeepZoom()
+    {
+        return needsDeepZoom(Math.min(xZoomFactor, yZoomFactor));
+    }
+
+    /**
+     * @param pixel the smaller side of a pixel in the complex plane
+     */
+    protected boolean needsDeepZoom(double pixel)
+    {
+        double extent = Math.max(Math.abs(xCenter), Math.abs(yCenter)) + 4.0/zoom;
+        return pixel < DEEP_ZOOM_ULPS * Math.ulp(extent);
+    }
+
+    /**
+     * needsPerturbation checks the same thing for double-double,
+     * which carries another 53 bits.
+     */
+    protected boolean needsPerturbation()
+    {
+        return needsPerturbation(Math.min(xZoomFactor, yZoomFactor));
+    }
+
+    /**
+     * @param pixel the smaller side of a pixel in the complex plane
+     */
+    protected boolean needsPerturbation(double pixel)
+    {
+        double extent = Math.max(Math.abs(xCenter), Math.abs(yCenter)) + 4.0/zoom;
+        return pixel < DEEP_ZOOM_ULPS * Math.scalb(Math.ulp(extent), -53);
+    }
+
+    /**
+     * lowPart gives what a double corner dropped of center + offset.
+     *
+     * @param center the full precision center
+     * @param offset distance from the center to the corner
+     * @param corner the corner rounded to a double
+     * @return center + offset - corner, rounded to a double
+     */
+    protected static double lowPart(BigDecimal center, double offset, double corner)
+    {
+        return center.add(new BigDecimal(offset)).subtract(new BigDecimal(corner))
+               .doubleValue();
+    }
+
+    /**
+     * renderTile computes every pixel of one tile, tiles are
+     * numbered left to right, top to bottom.
+     *
+     * @param tile the tile number (0 to numTiles-1)
+     */
+    protected void renderTile(int tile)
+    {
+        int x0 = (tile % tilesAcross) * TILE_SIZE;
+        int y0 = (tile / tilesAcross) * TILE_SIZE;
+        int x1 = Math.min(x0 + TILE_SIZE, width);
+        int y1 = Math.min(y0 + TILE_SIZE, height);
+        checkCancelled();
+        FractalEvents.Tile event = new FractalEvents.Tile();
+        event.begin();
+        Orbit z = newOrbit(); // per tile so workers never share it
+        if (traceNow) {
+            traceTile(x0, y0, x1, y1, z);
+        } else if (distanceKernel != null) {
+            distanceTile(x0, y0, x1, y1, z);
+        } else if (levelStep > 0) {
+            renderTileLevel(x0, y0, x1, y1, z);
+        } else if (rowKernel != null) {
+            renderTileRows(rowKernel, x0, y0, x1, y1);
+        } else {
+            for (int y = y0; y < y1; y++) {
+                checkCancelled();
+                int index = y*width + x0;
+                for (int x = x0; x < x1; x++, index++) {
+                    if (reused != null && reused[index]) continue;
+                    int i = iteratePoint(x, y, z);
+                    colorPixel(x, y, index, i, z.zx, z.zy);
+                }
+            }
+        }
+        addCounters(z);
+        event.x = x0;
+        event.y = y0;
+        event.level = levelStep;
+        commitEvent(event, (long)(x1 - x0)*(y1 - y0));
+        int percent = (int)(tilesDone.incrementAndGet()/(double)(numTiles*tileRuns)*100+0.5);
+        if (percent != lastPercent) {
+            lastPercent = percent;
+            setProgress("Calculating image: " + percent + "% complete ");
+        }
+    }
+
+    /**
+     * distanceTile renders a tile, taking the distance estimate of the
+     * escaped pixels on a DISTANCE_PROBE_STEP grid (dz costs about as
+     * much again as z, and a disk smaller than the grid saves little).
+     * When a disk clears DISTANCE_MIN_RADIUS pixels, every pixel of
+     * the tile not yet done inside it is outside the set too and gets
+     * this pixel's value without being iterated. Inside a disk the
+     * count still changes, so this is a guess like SpeedPass, only one
+     * the set can't leak into.
+     */
+    protected void distanceTile(int x0, int y0, int x1, int y1, Orbit z)
+    {
+        int w = x1 - x0;
+        boolean [] done = new boolean [w * (y1 - y0)];
+        double pixel = Math.max(xZoomFactor, yZoomFactor);
+        long skipped = 0;
+        for (int y = y0; y < y1; y++) {
+            checkCancelled();
+            for (int x = x0; x < x1; x++) {
+                int index = y*width + x;
+                if (done[(y - y0)*w + x - x0] || (reused != null && reused[index])) continue;
+                done[(y - y0)*w + x - x0] = true;
+                z.wantDistance = (x - x0) % DISTANCE_PROBE_STEP == 0
+                                 && (y - y0) % DISTANCE_PROBE_STEP == 0;
+                int i = iteratePoint(x, y, z);
+                colorPixel(x, y, index, i, z.zx, z.zy);
+                if (!z.wantDistance) continue;
+                double r = z.distance / pixel; // disk radius in pixels
+                if (r < DISTANCE_MIN_RADIUS) continue;
+                int ri = (int)r;
+                for (int fy = y; fy < Math.min(y1, y + ri + 1); fy++) { // rows above are done
+                    int half = (int)Math.sqrt(r*r - (fy - y)*(fy - y));
+                    for (int fx = Math.max(x0, x - half); fx < Math.min(x1, x + half + 1); fx++) {
+                        int k = (fy - y0)*w + fx - x0;
+                        int fill = fy*width + fx;
+                        if (done[k] || (reused != null && reused[fill])) continue;
+                        done[k] = true;
+                        iterationData[fill] = iterationData[index];
+                        pix[fill] = pix[index];
+                        skipped++;
+                    }
+                }
+            }
+        }
+        z.wantDistance = false;
+        distanceSkipped.addAndGet(skipped);
+    }
+
+    /**
+     * traceTile renders a tile by boundary tracing. The tile edge is
+     * queued, and every queued pixel is compared with its four
+     * neighbours (iterating them if needed). Where they differ the
+     * pixel sits on the outline of an iteration band, so the
+     * neighbours are queued too and the trace follows the outline.
+     * Pixels never reached are inside an outline and get the value
+     * of the pixel to their left.
+     */
+    protected void traceTile(int x0, int y0, int x1, int y1, Orbit z)
+    {
+        int [] queue = new int [(x1 - x0) * (y1 - y0)];
+        int tail = 0;
+        for (int x = x0; x < x1; x++) {
+            tail = enqueue(queue, tail, y0*width + x);
+            tail = enqueue(queue, tail, (y1 - 1)*width + x);
+        }
+        for (int y = y0 + 1; y < y1 - 1; y++) {
+            tail = enqueue(queue, tail, y*width + x0);
+            tail = enqueue(queue, tail, y*width + x1 - 1);
+        }
+        for (int head = 0; head < tail; head++) {
+            if ((head & 15) == 0) checkCancelled();
+            int index = queue[head];
+            int x = index % width;
+            int y = index / width;
+            boolean ll = x > x0;
+            boolean rr = x < x1 - 1;
+            boolean uu = y > y0;
+            boolean dd = y < y1 - 1;
+            int center = traceLoad(x, y, z);
+            boolean l = ll && traceLoad(x - 1, y, z) != center;
+            boolean r = rr && traceLoad(x + 1, y, z) != center;
+            boolean u = uu && traceLoad(x, y - 1, z) != center;
+            boolean d = dd && traceLoad(x, y + 1, z) != center;
+            if (l) tail = enqueue(queue, tail, index - 1);
+            if (r) tail = enqueue(queue, tail, index + 1);
+            if (u) tail = enqueue(queue, tail, index - width);
+            if (d) tail = enqueue(queue, tail, index + width);
+            // diagonals, so the trace turns outline corners
+            if (uu && ll && (l || u)) tail = enqueue(queue, tail, index - width - 1);
+            if (uu && rr && (r || u)) tail = enqueue(queue, tail, index - width + 1);
+            if (dd && ll && (l || d)) tail = enqueue(queue, tail, index + width - 1);
+            if (dd && rr && (r || d)) tail = enqueue(queue, tail, index + width + 1);
+        }
+        int computed = 0;
+        int filled = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int index = y*width + x0; index < y*width + x1; index++) {
+                if ((traced[index] & TRACE_LOADED) != 0) {
+                    computed++;
+                } else {
+                    // the left edge is always loaded
+                    iterationData[index] = iterationData[index - 1];
+                    pix[index] = pix[index - 1];
+                    filled++;
+                }
+            }
+        }
+        pixelsComputed.addAndGet(computed);
+        pixelsFilled.addAndGet(filled);
+    }
+
+    /**
+     * traceLoad iterates a pixel of a traced render the first time
+     * it is asked for.
+     *
+     * @return the pixel's iterationData
+     */
+    protected int traceLoad(int x, int y, Orbit z)
+    {
+        int index = y*width + x;
+        if ((traced[index] & TRACE_LOADED) == 0) {
+            traced[index] |= TRACE_LOADED;
+            computePixel(x, y, z);
+        }
+        return iterationData[index];
+    }
+
+    /**
+     * enqueue adds a pixel to a trace queue unless it has been queued.
+     *
+     * @return the new tail of the queue
+     */
+    protected int enqueue(int [] queue, int tail, int index)
+    {
+        if ((traced[index] & TRACE_QUEUED) != 0) return tail;
+        traced[index] |= TRACE_QUEUED;
+        queue[tail] = index;
+        return tail + 1;
+    }
+
+    /**
+     * renderTileRows computes a tile a row at a time through a
+     * RowKernel, with the same bulb test and coloring as iteratePoint.
+     */
+    protected void renderTileRows(RowKernel rk, int x0, int y0, int x1, int y1)
+    {
+        int count = x1 - x0;
+        double [] zx = new double [TILE_SIZE];
+        double [] zy = new double [TILE_SIZE];
+        double [] cx = new double [TILE_SIZE];
+        double [] cy = new double [TILE_SIZE];
+        boolean [] done = new boolean [TILE_SIZE];
+        int [] iters = new int [TILE_SIZE];
+        Orbit z = new Orbit(); // just for the counters
+        for (int y = y0; y < y1; y++) {
+            checkCancelled();
+            for (int k = 0; k < count; k++) {
+                int x = x0 + k;
+                done[k] = reused != null && reused[y*width + x];
+                if (isMandlebrot) {
+                    zx[k] = 0;
+                    zy[k] = 0;
+                    cx[k] = xCoords[x];
+                    cy[k] = yCoords[y];
+                    if (useBulbTest && inMainBulbs(cx[k], cy[k])) {
+                        done[k] = true;
+                        iters[k] = numIter;
+                    }
+                } else {
+                    zx[k] = xCoords[x];
+                    zy[k] = yCoords[y];
+                    cx[k] = juliaX;
+                    cy[k] = juliaY;
+                }
+            }
+            rk.iterateRow(zx, zy, cx, cy, count, power, numIter, done, iters);
+            int index = y*width + x0;
+            for (int k = 0; k < count; k++, index++) {
+                if (reused != null && reused[index]) continue;
+                if (iters[k] >= numIter && orbitX != null) {
+                    orbitX[index] = zx[k];
+                    orbitY[index] = zy[k];
+                }
+                colorPixel(x0 + k, y, index, iters[k], zx[k], zy[k]);
+                if (iters[k] >= numIter) {
+                    z.counted += numIter;
+                    z.inside++;
+                } else {
+                    z.counted += iters[k];
+                    z.maxEscape = Math.max(z.maxEscape, iters[k]);
+                }
+            }
+        }
+        addCounters(z);
+    }
+
+    /**
+     * iteratePoint runs the escape-time loop for one pixel through the
+     * kernel picked for this power. Points of the z^2 Mandlebrot main
+     * cardioid and period-2 bulb are known to be inside and skip the
+     * loop when the inner coloring doesn't need the final z. With
+     * usePeriodicity on (and the same condition) the kernel compares
+     * the orbit against a saved point whose window doubles Brent-style,
+     * and an orbit that comes back within periodEps of it is in a cycle
+     * and called inside the set. In distance fill renders an orbit that
+     * escaped is run again through the DistanceKernel, which leaves the
+     * distance estimate in z as well (inside points never pay for it).
+     *
+     * @param x the pixel column
+     * @param y the pixel row
+     * @param z receives the final real and imaginary parts of z
+     * @return the iteration the orbit escaped at, numIter if it never did
+     */
+    protected int iteratePoint(int x, int y, Orbit z)
+    {
+        int i = escapeTime(x, y, z);
+        if (i >= numIter) {
+            z.counted += numIter;
+            z.inside++;
+        } else {
+            z.counted += i;
+            z.maxEscape = Math.max(z.maxEscape, i);
+        }
+        if (i >= numIter && orbitX != null) {
+            // keep where it stopped, raising numIter carries on from here
+            int index = y*width + x;
+            orbitX[index] = z.zx;
+            orbitY[index] = z.zy;
+            if (orbitXLo != null) {
+                orbitXLo[index] = z.zxLo;
+                orbitYLo[index] = z.zyLo;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * escapeTime is iteratePoint without keeping the orbit.
+     */
+    protected int escapeTime(int x, int y, Orbit z)
+    {
+        if (deep != null) {
+            int i = deep.iterate(x, y, z);
+            glitched[y*width + x] = z.glitched;
+            return i;
+        }
+        if (ddKernel != null) {
+            if (isMandlebrot) {
+                return ddKernel.iterate(0, 0, 0, 0, xCoords[x], xCoordsLo[x],
+                                        yCoords[y], yCoordsLo[y], numIter, z);
+            }
+            return ddKernel.iterate(xCoords[x], xCoordsLo[x], yCoords[y],
+                                    yCoordsLo[y], juliaX, 0, juliaY, 0, numIter, z);
+        }
+        double zx = 0;
+        double zy = 0;
+        double incrX = xCoords[x];
+        double incrY = yCoords[y];
+
+        if (!isMandlebrot) 
+        {    
+            zx = xCoords[x];
+            zy = yCoords[y];
+
+            incrX = juliaX;
+            incrY = juliaY;
+        }                    
+
+        if (useBulbTest && inMainBulbs(incrX, incrY)) {
+            z.zx = 0;
+            z.zy = 0;
+            z.distance = 0;
+            return numIter;
+        }
+        if (distanceKernel != null && z.wantDistance) {
+            // only an escaped orbit has a distance, run it again with dz
+            z.distance = 0;
+            int i = kernel.iterate(zx, zy, incrX, incrY, numIter, z);
+            if (i >= numIter) return i;
+            return distanceKernel.iterate(zx, zy, incrX, incrY, i + 1, z);
+        }
+        return kernel.iterate(zx, zy, incrX, incrY, numIter, z);
+    }
+
+    /**
+     * @return a scratch Orbit set up for this render's periodicity check
+     */
+    protected Orbit newOrbit()
+    {
+        Orbit o = new Orbit();
+        o.checkPeriod = usePeriodicityNow;
+        o.periodEps = periodEps;
+        return o;
+    }
+
+    /**
+     * inMainBulbs tests c against the closed forms of the main
+     * cardioid and the period-2 bulb of the z^2 Mandlebrot set.
+     *
+     * @return true if c is inside either one
+     */
+    protected static boolean inMainBulbs(double cx, double cy)
+    {
+        double yy = cy*cy;
+        double qx = cx - 0.25;
+        double q = qx*qx + yy;
+        if (q*(q + qx) <= 0.25*yy) return true; // main cardioid
+        double bx = cx + 1;
+        return bx*bx + yy <= 0.0625; // period-2 bulb, radius 1/4 around -1
+    }
+
+    /**
+     * colorPixel applies the pixelColorScheme (or innerPixelColorScheme
+     * when the orbit never escaped) to one iterated pixel, storing
+     * the palette index in iterationData and the color in pix.
+     *
+     * @param x the pixel column
+     * @param y the pixel row
+     * @param index the offset of the pixel in pix and iterationData
+     * @param i the iteration count from iteratePoint
+     * @param zx the final real part of z
+     * @param zy the final imaginary part of z
+     */
+    protected void colorPixel(int x, int y, int index, int i, double zx, double zy)
+    {
+        int ratio_ind = dataIndex(x, y, i, zx, zy);
+        iterationData [index] = ratio_ind; // store iter. val for regen.
+        if (i >= numIter && innerPixelColorScheme != INNERCOLOR_ANGLE_BASED) {
+            pix[index] =255 << 24; // color black
+            return;
+        }
+        if (smoothData != null) {
+            smoothData[index] = i < numIter ? smoothIteration(x, y, i, zx, zy) : ratio_ind;
+            pix[index] = smoothColor(smoothData[index]);
+        } else {
+            pix[index]=preMixColors[ratio_ind];
+        }
+    }
+
+    /**
+     * dataIndex works out what colorPixel stores in iterationData: the
+     * preMixColors index of an escaped pixel, the angle based index of
+     * an inside one, or the count itself (numIter or more, black).
+     */
+    protected int dataIndex(int x, int y, int i, double zx, double zy)
+    {
+        if (i<numIter) {
+            return escapedIndex(x, y, i, zx, zy);
+        }
+        // never escaped, is part of the inside fractal set
+        if (innerPixelColorScheme == INNERCOLOR_ANGLE_BASED) {
+            double normsq = clampedNormsq(x, y, zx, zy);
+            return (int)( ( angleOf(x, y, normsq)/(2*Math.PI) )*(numIter-1) );
+        }
+        return i;
+    }
+
+    /**
+     * smoothIteration turns an escape count into a fractional one that
+     * runs smoothly across the iteration bands. The kernels stop at
+     * |z| > 2, so z is taken on to SMOOTH_BAILOUT first (a larger
+     * bailout radius without touching the kernels or the counts), then
+     *
+     *   mu = n + 1 - log_power(log2 |z_n|)
+     *
+     * @return mu, 0 or more
+     */
+    protected float smoothIteration(int x, int y, int i, double zx, double zy)
+    {
+        double cx = isMandlebrot ? xCoords[x] : juliaX;
+        double cy = isMandlebrot ? yCoords[y] : juliaY;
+        double mag = zx*zx + zy*zy;
+        int n = i;
+        for (int k = 0; k < SMOOTH_STEPS && mag < SMOOTH_BAILOUT; k++) {
+            // z^power + c by repeated squaring
+            double rx = 1;
+            double ry = 0;
+            double sx = zx;
+            double sy = zy;
+            for (int e = power; e != 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    double t = rx*sx - ry*sy;
+                    ry = rx*sy + ry*sx;
+                    rx = t;
+                }
+                double t = sx*sx - sy*sy;
+                sy = 2*sx*sy;
+                sx = t;
+            }
+            rx += cx;
+            ry += cy;
+            double m = rx*rx + ry*ry;
+            if (Double.isInfinite(m) || Double.isNaN(m)) break; // high powers overshoot
+            zx = rx;
+            zy = ry;
+            mag = m;
+            n++;
+        }
+        double mu = n + 1 - Math.log(0.5*Math.log(mag)/Math.log(2))/Math.log(power);
+        if (!(mu > 0)) return 0;
+        return (float)mu; // past numIter-1 too, smoothColor clamps
+    }
+
+    /**
+     * smoothColor blends the two preMixColors a smooth count falls between.
+     */
+    protected int smoothColor(float mu)
+    {
+        int j = (int)mu;
+        if (j >= numIter - 1) return preMixColors[numIter - 1];
+        float t = mu - j;
+        int a = preMixColors[j];
+        int b = preMixColors[j + 1];
+        int r = (a >> 16) & 255;
+        int g = (a >> 8) & 255;
+        int bl = a & 255;
+        r += (int)((((b >> 16) & 255) - r)*t);
+        g += (int)((((b >> 8) & 255) - g)*t);
+        bl += (int)(((b & 255) - bl)*t);
+        return (a & 0xff000000) | (r << 16) | (g << 8) | bl;
+    }
+
+    /**
+     * @return the color of a finished pixel from its iterationData
+     * (or smoothData) and the current preMixColors, averaged with its
+     * extra samples if it was anti-aliased
+     */
+    protected int colorOf(int index)
+    {
+        int color = sampleColor(iterationData[index],
+                                smoothData != null ? smoothData[index] : 0);
+        if (aaSlot == null || aaSlot[index] < 0) return color;
+        int k = aaSlot[index];
+        int r = (color >> 16) & 255;
+        int g = (color >> 8) & 255;
+        int b = color & 255;
+        int first = k*aaStride;
+        int last = first + aaTaken[k];
+        for (int s = first; s < last; s++) {
+            int c = sampleColor(aaData[s], aaSmooth != null ? aaSmooth[s] : 0);
+            r += (c >> 16) & 255;
+            g += (c >> 8) & 255;
+            b += c & 255;
+        }
+        int n = last - first + 1;
+        r = (r + n/2)/n;
+        g = (g + n/2)/n;
+        b = (b + n/2)/n;
+        return (255 << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * @return the color of one sample from its iterationData value and
+     * smooth count (only read when smoothData is kept)
+     */
+    protected int sampleColor(int d, float mu)
+    {
+        if (d >= numIter) return 255 << 24; // never escaped
+        if (smoothData != null) return smoothColor(mu);
+        return preMixColors[d];
+    }
+
+    /**
+     * antiAlias supersamples the edges of a finished frame, the pixels
+     * whose iterationData differs from one of their four neighbours.
+     * Each takes up to antiAliasSamples-1 more samples jittered inside
+     * the pixel, stopping after AA_FIRST_SAMPLES if none of those came
+     * out different from the pixel, and is colored with the average of
+     * all of them. Flat areas take no samples at all, so the cost
+     * follows how much edge the frame has rather than its size.
+     * The samples are kept, recoloring averages them again.
+     *
+     * @throws CancellationException if a newer render cancelled this one
+     */
+    protected void antiAlias()
+    {
+        aaSlot = null;
+        aaSamples.set(0);
+        // SpeedPass guesses at exactly these pixels, leave it alone
+        if (antiAliasSamples < 2 || useSpeedPass) return;
+        int [] slot = new int [width * height];
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y*width + x;
+                int d = insideAsCap(index);
+                if ((x > 0 && insideAsCap(index - 1) != d)
+                    || (x < width - 1 && insideAsCap(index + 1) != d)
+                    || (y > 0 && insideAsCap(index - width) != d)
+                    || (y < height - 1 && insideAsCap(index + width) != d)) {
+                    slot[index] = count++;
+                } else {
+                    slot[index] = -1;
+                }
+            }
+        }
+        aaIndex = new int [count];
+        for (int index = 0; index < slot.length; index++) {
+            if (slot[index] >= 0) aaIndex[slot[index]] = index;
+        }
+        aaStride = antiAliasSamples - 1;
+        aaTaken = new int [count];
+        aaData = new int [count * aaStride];
+        aaSmooth = smoothData != null ? new float [count * aaStride] : null;
+        aaSlot = slot;
+        setProgress("Anti-aliasing " + count + " edge pixels");
+        renderPool.invoke(new AntiAliasTask(0, count));
+    }
+
+    /**
+     * @return iterationData at index, numIter for any inside pixel
+     * (a lowered cap or a cached tile can leave counts past it)
+     */
+    protected int insideAsCap(int index)
+    {
+        return Math.min(iterationData[index], numIter);
+    }
+
+    /**
+     * sampleEdge takes the extra samples of aaIndex entry k and colors
+     * the pixel from them. The offsets are the R2 sequence turned by a
+     * random amount per pixel, so however many get taken they are
+     * spread evenly, and neighbouring pixels don't sample alike.
+     * The coloring schemes that look at the coordinates use the pixel's.
+     *
+     * @return the number of samples taken
+     */
+    protected int sampleEdge(int k, Orbit z)
+    {
+        int index = aaIndex[k];
+        int x = index % width;
+        int y = index / width;
+        int center = insideAsCap(index);
+        double jx = jitter(2L*index);
+        double jy = jitter(2L*index + 1);
+        int base = k*aaStride;
+        boolean differs = false;
+        int s;
+        for (s = 0; s < aaStride; s++) {
+            if (s == AA_FIRST_SAMPLES && !differs) break; // flat inside, the edge is next door
+            double ox = (jx + (s + 1)*R2_X) % 1 - 0.5;
+            double oy = (jy + (s + 1)*R2_Y) % 1 - 0.5;
+            int i = iterateSample(x, y, ox, oy, z);
+            int d;
+            float mu = 0;
+            if (deep != null && z.glitched) {
+                // off the reference, the pixel's own sample stands in
+                d = center;
+                if (aaSmooth != null) mu = smoothData[index];
+            } else {
+                d = dataIndex(x, y, i, z.zx, z.zy);
+                if (aaSmooth != null) {
+                    mu = i < numIter ? smoothIteration(x, y, i, z.zx, z.zy) : d;
+                }
+            }
+            aaData[base + s] = d;
+            if (aaSmooth != null) aaSmooth[base + s] = mu;
+            differs |= d != center;
+        }
+        aaTaken[k] = s;
+        pix[index] = colorOf(index);
+        return s;
+    }
+
+    /**
+     * iterateSample is escapeTime for the point ox, oy pixels off the
+     * center of pixel x, y (both within half a pixel).
+     */
+    protected int iterateSample(int x, int y, double ox, double oy, Orbit z)
+    {
+        if (deep != null) return deep.iterate(x + ox, y + oy, z);
+        if (ddKernel != null) {
+            double [] r = z.sample;
+            DoubleDoubleKernel.add(r, 0, xCoords[x], xCoordsLo[x], ox*xZoomFactor, 0);
+            DoubleDoubleKernel.add(r, 2, yCoords[y], yCoordsLo[y], -oy*yZoomFactor, 0);
+            if (isMandlebrot) {
+                return ddKernel.iterate(0, 0, 0, 0, r[0], r[1], r[2], r[3], numIter, z);
+            }
+            return ddKernel.iterate(r[0], r[1], r[2], r[3], juliaX, 0, juliaY, 0, numIter, z);
+        }
+        double px = xCoords[x] + ox*xZoomFactor;
+        double py = yCoords[y] - oy*yZoomFactor;
+        double zx = 0;
+        double zy = 0;
+        double incrX = px;
+        double incrY = py;
+        if (!isMandlebrot) {
+            zx = px;
+            zy = py;
+            incrX = juliaX;
+            incrY = juliaY;
+        }
+        if (useBulbTest && inMainBulbs(incrX, incrY)) {
+            z.zx = 0;
+            z.zy = 0;
+            return numIter;
+        }
+        return kernel.iterate(zx, zy, incrX, incrY, numIter, z);
+    }
+
+    /**
+     * @return a number in [0, 1) that looks random but always comes
+     * out the same for the same seed, so renders repeat exactly
+     */
+    protected static double jitter(long seed)
+    {
+        seed = (seed ^ (seed >>> 33)) * 0xff51afd7ed558ccdL;
+        seed = (seed ^ (seed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        seed ^= seed >>> 33;
+        return (seed >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * recolor makes a new pix from the stored iterations, one pass
+     * split in bands of rows over the renderPool. Nothing is iterated.
+     */
+    protected void recolor()
+    {
+        FractalEvents.Recolor event = new FractalEvents.Recolor();
+        event.begin();
+        pix = new int [width * height];
+        renderPool.invoke(new RecolorTask(0, height));
+        commitEvent(event, (long)width*height);
+    }
+
+    /**
+     * makeImage makes the Image of pix.
+     */
+    protected Image makeImage()
+    {
+        FractalEvents.CreateImage event = new FractalEvents.CreateImage();
+        event.begin();
+        Image image = createImage(new MemoryImageSource(width,height, pix, 0,width));
+        commitEvent(event, (long)width*height);
+        return image;
+    }
+
+    /**
+     * commitEvent fills in the fields every FractalEvents event has
+     * from this render and commits it, if a recording wants it.
+     *
+     * @param pixels the pixels the phase covered
+     */
+    protected void commitEvent(FractalEvents.Phase event, long pixels)
+    {
+        if (!event.shouldCommit()) return;
+        event.width = width;
+        event.height = height;
+        event.power = power;
+        event.iterations = numIter;
+        event.pixels = pixels;
+        event.commit();
+    }
+
+    /**
+     * escapedIndex maps an escaped pixel to its preMixColors index
+     * according to the current pixelColorScheme. Since numIter is tied
+     * to the number of preset colors for now it is used to scale
+     * every scheme.
+     */
+    protected int escapedIndex(int x, int y, int i, double zx, double zy)
+    {
+        double normsq;
+        int ratio_ind;
+        switch ( pixelColorScheme ) {
+
+            case PIXEL_MAGNITUDE_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                return (int)((normsq/maxEscapeMag)*(numIter-1));
+
+            case PIXEL_COS_BASED:
+                normsq = zx*zx + zy*zy;
+                return (int)( ((cosineOf(x, normsq)+1)/2)*(numIter-1) );
+
+            case PIXEL_SIN_BASED:
+                normsq = zx*zx + zy*zy;
+                return (int)(((sineOf(y, normsq)+1)/2)*(numIter-1));
+
+            case PIXEL_MAG_SHIFT_ANGLE_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                ratio_ind =(int)((normsq/maxEscapeMag)*(numIter-1));
+                // now rotate mag based on angle
+                ratio_ind += (int)( ( angleOf(x, y, normsq)/(2*Math.PI) )*(numIter-1) );
+                break;
+
+            case PIXEL_ITER_SHIFT_ANGLE_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                ratio_ind =i;
+                // now rotate iters based on angle
+                ratio_ind += (int)( ( angleOf(x, y, normsq)/(2*Math.PI) )*(numIter-1) );
+                break;
+
+            case PIXEL_ANGLE_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                return (int)( ( angleOf(x, y, normsq)/(2*Math.PI) )*(numIter-1) );
+
+            case PIXEL_MAG_SHIFT_COS_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                ratio_ind =(int)((normsq/maxEscapeMag)*(numIter-1));
+                // now rotate mag based on cosine
+                ratio_ind += (int)( ( (cosineOf(x, normsq)+1)/2 )*(numIter-1) );
+                break;
+
+            case PIXEL_MAG_SHIFT_SIN_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                ratio_ind =(int)((normsq/maxEscapeMag)*(numIter-1));
+                // now rotate mag based on sine
+                ratio_ind += (int)( ( (sineOf(y, normsq)+1)/2 )*(numIter-1) );
+                break;
+
+            case PIXEL_ITER_SHIFT_COS_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                ratio_ind =i;
+                // now rotate iters based on cosine
+                ratio_ind += (int)( ( (cosineOf(x, normsq)+1)/2 )*(numIter-1) );
+                break;
+
+            case PIXEL_ITER_SHIFT_SIN_BASED:
+                normsq = clampedNormsq(x, y, zx, zy);
+                ratio_ind = i;
+                // now rotate iters based on sine
+                ratio_ind += (int)( ( (sineOf(y, normsq)+1)/2 )*(numIter-1) );
+                break;
+
+            default: // PIXEL_ITERATION_BASED
+                return i;
+        }
+        if (ratio_ind>(numIter-1)) ratio_ind -= (numIter-1);
+        return ratio_ind;
+    }
+
+    /**
+     * clampedNormsq returns the squared magnitude of the final z, or
+     * maxEscapeMag when the original x and y were already outside the
+     * circle of radius 2.
+     */
+    protected double clampedNormsq(int x, int y, double zx, double zy)
+    {
+        if ( xCoords[x]*xCoords[x] + yCoords[y]*yCoords[y] > 4 ) {
+            return maxEscapeMag;
+        }
+        return zx*zx + zy*zy;
+    }
+
+    protected double cosineOf(int x, double normsq)
+    {
+        double radius = Math.sqrt(normsq);
+        if ( radius != 0 ) return xCoords[x]/radius;
+        return 0;
+    }
+
+    protected double sineOf(int y, double normsq)
+    {
+        double radius = Math.sqrt(normsq);
+        if ( radius != 0 ) return yCoords[y]/radius;
+        return 0;
+    }
+
+    protected double angleOf(int x, int y, double normsq)
+    {
+        double angle = Math.acos(cosineOf(x, normsq));
+        if (yCoords[y] < 0 )angle = 2*Math.PI-angle;
+        return angle;
+    }
+
+    /**
+     * openProgress finds the frame to report percent complete on,
+     * throwing up a small one of our own if the viewer has none.
+     * No frame is used when running headless.
+     */
+    protected void openProgress()
+    {
+        ownsProgress = false;
+        if ( v.getFrame() instanceof JFrame ) 
+        {
+            progress = (JFrame) v.getFrame();
+        } else if ( GraphicsEnvironment.isHeadless() ) {
+            progress = null;
+        } else {
+            progress = new JFrame();
+            ownsProgress = true;
+            progress.setBounds (10,10,80,20);
+            progress.setSize (400, 20 );
+            progress.getContentPane().add( new bBox (0,0,380 , 10 , Color.white ));
+            progress.setVisible ( true );
+            progress.show();
+            progress.validate();
+            progress.repaint();
+        }
+    }
+
+    protected void setProgress(String title)
+    {
+        JFrame p = progress;
+        if (p != null) {
+            p.setTitle(title);
+            p.repaint();
+        }
+    }
+
+    protected void closeProgress()
+    {
+        if (progress == null) return;
+        if ( ownsProgress ) 
+            progress.dispose();
+        else
+            progress.setTitle(v.getFrameTitle());
+        progress = null;
+    }
+
+    /**
+     * Picks how the next renders iterate: PRECISION_AUTO switches to
+     * double-double once doubles can't tell pixels apart, and to
+     * perturbation once double-double can't either. PRECISION_DOUBLE,
+     * PRECISION_DOUBLE_DOUBLE and PRECISION_PERTURBATION force one.
+     */
+    public void setPrecisionMode (int mode) {
+        precisionMode = mode;
+    }
+
+    /**
+     * @return true if the last render used the perturbation engine
+     */
+    public boolean isDeepRender() {
+        return deep != null;
+    }
+
+    /**
+     * @return true if the last render iterated in double-double
+     */
+    public boolean isDoubleDoubleRender() {
+        return ddKernel != null;
+    }
+
+    /**
+     * @return reference orbits used by the last deep render
+     */
+    public int getReferenceCount() {
+        return deep == null ? 0 : deep.getReferenceCount();
+    }
+
+    /**
+     * @return glitched pixels no reference could fix in the last deep render
+     */
+    public int getGlitchedPixels() {
+        return deep == null ? 0 : glitchedPixels;
+    }
+
+    /**
+     * Turns the periodicity check for interior orbits on or off,
+     * takes effect on the next render.
+     */
+    public void setPeriodicityCheck (boolean usePeriodicity) {
+        this.usePeriodicity = usePeriodicity;
+    }
+
+    /**
+     * Turns the Vector API row kernel on or off, takes effect on
+     * the next render. Renders stay scalar if it can't be loaded.
+     *
+     * @return true if the vector kernel will be used
+     */
+    public boolean setVectorKernel (boolean useVectorKernel) {
+        this.useVectorKernel = useVectorKernel;
+        return useVectorKernel && isVectorKernelAvailable();
+    }
+
+    public static boolean isVectorKernelAvailable() {
+        return getVectorKernel() != null;
+    }
+
+    /**
+     * getVectorKernel loads VectorKernel by name the first time, so
+     * Fractal still runs when VectorKernel wasn't compiled (it is in
+     * vector/) or the jdk.incubator.vector module is missing (run
+     * with --add-modules jdk.incubator.vector).
+     *
+     * @return the vector kernel, null if it can't be used here
+     */
+    public static synchronized RowKernel getVectorKernel()
+    {
+        if (!vectorKernelTried) {
+            vectorKernelTried = true;
+            try {
+                if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                    RowKernel k = (RowKernel) Class.forName("VectorKernel")
+                        .getDeclaredConstructor().newInstance();
+                    // one tiny row, in case the vector classes fail to link
+                    int n = RowKernel.ARRAY_MULTIPLE;
+                    k.iterateRow(new double [n], new double [n], new double [n],
+                        new double [n], 1, 2, 1, new boolean [n], new int [n]);
+                    vectorKernel = k;
+                }
+            } catch (Throwable t) {} // not there, stay scalar
+        }
+        return vectorKernel;
+    }
+
+    /**
+     * @return iterations the periodicity check skipped during the last render
+     */
+    public long getPeriodicitySavedIterations() {
+        return periodicitySaved.get();
+    }
+
+    /**
+     * Sets the number of worker threads used by every Fractal's
+     * tile renderer. The default comes from the fractal.threads
+     * system property, or the number of available processors.
+     *
+     * @param threads number of render threads (>0)
+     */
+    public static synchronized void setRenderThreads(int threads)
+    {
+        if (threads < 1) threads = 1;
+        if (threads == renderPool.getParallelism()) return;
+        ForkJoinPool old = renderPool;
+        renderPool = new ForkJoinPool(threads);
+        old.shutdown();
+    }
+
+    public static int getRenderThreads()
+    {
+        return renderPool.getParallelism();
+    }
+
+    private static int defaultRenderThreads()
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            threads = Integer.parseInt(System.getProperty("fractal.threads", "" + threads));
+        } catch (Exception ex) {} // bad property, keep the processor count
+        return Math.max(1, threads);
+    }
+
+    /**
+     * Orbit holds the final z of the last iterated pixel, the state of
+     * the periodicity check and counters a worker adds up over its tile.
+     */
+    protected static class Orbit
+    {
+        double zx, zy; // final z of the last pixel
+        double zxLo, zyLo; // low parts of the final z, double-double only
+        double distance; // exterior distance estimate, DistanceKernel only
+        boolean wantDistance; // run escaped orbits again for the distance
+        long skipped; // iterations skipped by the periodicity check
+        long counted; // escape counts of the pixels iterated, inside ones at the cap
+        long inside; // pixels iterated that reached the cap
+        int maxEscape; // highest count of a pixel iterated that escaped
+        boolean checkPeriod; // run the periodicity check
+        double periodEps; // cycle match distance
+        double ckx, cky; // saved point of the periodicity check
+        int window, steps; // iterations between saves (doubles each save)
+        boolean glitched; // deep zoom pixel lost its precision
+        final double [] scratch = new double [10]; // kernel temporaries, DoubleDoubleKernel and DistanceKernel
+        final double [] sample = new double [4]; // a sample point in double-double
+
+        void startCycleCheck(double zx, double zy)
+        {
+            ckx = zx;
+            cky = zy;
+            window = 1;
+            steps = 0;
+        }
+
+        /**
+         * @return true if z came back to the saved point, else
+         * counts the step and moves the saved point when due
+         */
+        boolean cycled(double zx, double zy)
+        {
+            if (Math.abs(zx - ckx) < periodEps && Math.abs(zy - cky) < periodEps) {
+                return true;
+            }
+            if (++steps == window) {
+                steps = 0;
+                window += window;
+                ckx = zx;
+                cky = zy;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * PixelListTask iterates and colors a list of pixels, splitting
+     * itself in half down to PIXELS_PER_TASK pixels.
+     */
+    protected class PixelListTask extends RecursiveAction
+    {
+        public static final int PIXELS_PER_TASK = 256;
+        private int [] list;
+        private int first, last; // list entries first to last-1
+
+        public PixelListTask(int [] list, int first, int last)
+        {
+            this.list = list;
+            this.first = first;
+            this.last = last;
+        }
+
+        protected void compute()
+        {
+            if (last - first <= PIXELS_PER_TASK) {
+                checkCancelled();
+                Orbit z = newOrbit();
+                for (int k = first; k < last; k++) {
+                    int index = list[k];
+                    int x = index % width;
+                    int y = index / width;
+                    int i = iteratePoint(x, y, z);
+                    colorPixel(x, y, index, i, z.zx, z.zy);
+                }
+                addCounters(z);
+            } else {
+                int mid = (first + last) >>> 1;
+                invokeAll(new PixelListTask(list, first, mid),
+                          new PixelListTask(list, mid, last));
+            }
+        }
+    }
+
+    /**
+     * RecolorTask recolors rows first to last-1, splitting itself in
+     * half down to ROWS_PER_TASK rows.
+     */
+    protected class RecolorTask extends RecursiveAction
+    {
+        private int first, last;
+
+        public RecolorTask(int first, int last)
+        {
+            this.first = first;
+            this.last = last;
+        }
+
+        protected void compute()
+        {
+            if (last - first <= ROWS_PER_TASK) {
+                for (int i = first*width; i < last*width; i++) pix[i] = colorOf(i);
+            } else {
+                int mid = (first + last) >>> 1;
+                invokeAll(new RecolorTask(first, mid), new RecolorTask(mid, last));
+            }
+        }
+    }
+
+    /**
+     * AntiAliasTask supersamples aaIndex entries first to last-1,
+     * splitting itself in half down to PixelListTask.PIXELS_PER_TASK
+     * entries.
+     */
+    protected class AntiAliasTask extends RecursiveAction
+    {
+        private int first, last;
+
+        public AntiAliasTask(int first, int last)
+        {
+            this.first = first;
+            this.last = last;
+        }
+
+        protected void compute()
+        {
+            if (last - first <= PixelListTask.PIXELS_PER_TASK) {
+                checkCancelled();
+                Orbit z = newOrbit();
+                long taken = 0;
+                for (int k = first; k < last; k++) taken += sampleEdge(k, z);
+                aaSamples.addAndGet(taken);
+                addCounters(z);
+            } else {
+                int mid = (first + last) >>> 1;
+                invokeAll(new AntiAliasTask(first, mid), new AntiAliasTask(mid, last));
+            }
+        }
+    }
+
+    /**
+     * ResumeTask carries on a run of resumeIndex entries, splitting
+     * itself in half down to PixelListTask.PIXELS_PER_TASK entries.
+     */
+    protected class ResumeTask extends RecursiveAction
+    {
+        private int [] counts; // total iterations of each entry
+        private double [] z; // final z of each entry, laid out like resumeZ
+        private int first, last; // entries first to last-1
+
+        public ResumeTask(int [] counts, double [] z, int first, int last)
+        {
+            this.counts = counts;
+            this.z = z;
+            this.first = first;
+            this.last = last;
+        }
+
+        protected void compute()
+        {
+            if (last - first <= PixelListTask.PIXELS_PER_TASK) {
+                resumeRun(first, last, counts, z);
+            } else {
+                int mid = (first + last) >>> 1;
+                invokeAll(new ResumeTask(counts, z, first, mid),
+                          new ResumeTask(counts, z, mid, last));
+            }
+        }
+    }
+
+    /**
+     * SubdivideTask handles the inside of one rectangle whose border
+     * pixels (corners x0,y0 and x1,y1 inclusive) are already done.
+     */
+    protected class SubdivideTask extends RecursiveAction
+    {
+        private int x0, y0, x1, y1;
+
+        public SubdivideTask(int x0, int y0, int x1, int y1)
+        {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+        }
+
+        protected void compute()
+        {
+            checkCancelled();
+            int inside = (x1 - x0 - 1) * (y1 - y0 - 1);
+            if (inside <= 0) return;
+            int i = iterationData[y0*width + x0];
+            if (borderIs(i)) {
+                int color = pix[y0*width + x0];
+                for (int y = y0 + 1; y < y1; y++) {
+                    Arrays.fill(iterationData, y*width + x0 + 1, y*width + x1, i);
+                    Arrays.fill(pix, y*width + x0 + 1, y*width + x1, color);
+                }
+                pixelsFilled.addAndGet(inside);
+                subdivisionProgress();
+                return;
+            }
+            Orbit z = newOrbit();
+            if (x1 - x0 <= MIN_SUBDIVIDE || y1 - y0 <= MIN_SUBDIVIDE) {
+                for (int y = y0 + 1; y < y1; y++) {
+                    checkCancelled();
+                    for (int x = x0 + 1; x < x1; x++) {
+                        computePixel(x, y, z);
+                    }
+                }
+                addCounters(z);
+                pixelsComputed.addAndGet(inside);
+                subdivisionProgress();
+            } else if (x1 - x0 >= y1 - y0) {
+                int mid = (x0 + x1) >>> 1; // cut with a column
+                for (int y = y0 + 1; y < y1; y++) {
+                    computePixel(mid, y, z);
+                }
+                addCounters(z);
+                pixelsComputed.addAndGet(y1 - y0 - 1);
+                invokeAll(new SubdivideTask(x0, y0, mid, y1),
+                          new SubdivideTask(mid, y0, x1, y1));
+            } else {
+                int mid = (y0 + y1) >>> 1; // cut with a row
+                for (int x = x0 + 1; x < x1; x++) {
+                    computePixel(x, mid, z);
+                }
+                addCounters(z);
+                pixelsComputed.addAndGet(x1 - x0 - 1);
+                invokeAll(new SubdivideTask(x0, y0, x1, mid),
+                          new SubdivideTask(x0, mid, x1, y1));
+            }
+        }
+
+        /**
+         * @return true if every border pixel has iteration value i
+         */
+        private boolean borderIs(int i)
+        {
+            for (int x = x0; x <= x1; x++) {
+                if (iterationData[y0*width + x] != i
+                    || iterationData[y1*width + x] != i) return false;
+            }
+            for (int y = y0 + 1; y < y1; y++) {
+                if (iterationData[y*width + x0] != i
+                    || iterationData[y*width + x1] != i) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * TileTask renders a run of tiles, splitting itself in half
+     * until a single tile is left so idle workers can steal the rest.
+     */
+    protected class TileTask extends RecursiveAction
+    {
+        private int first, last; // tiles first to last-1
+
+        public TileTask(int first, int last)
+        {
+            this.first = first;
+            this.last = last;
+        }
+
+        protected void compute()
+        {
+            if (last - first == 1) {
+                renderTile(first);
+            } else {
+                int mid = (first + last) >>> 1;
+                invokeAll(new TileTask(first, mid), new TileTask(mid, last));
+            }
+        }
+    }
+
+    /**
+     * The changeColors method allows the pre-mapped iteration
+     * bands to switch colorSet, mode and repeats. Long Live
+     * the chameleon!
+     *
+     * @param cSet - the new (or the same) colorSet
+     * @param cMode the new color mode to apply
+     * @param numReps the new color reps to apply        
+     *
+     */
+
+    public void changeColors (int[] cSet,int cMode,int numReps)
+    {
+        colorSet = cSet;         
+        colMode = cMode; 
+        numColors = colorSet.length;
+        colRepeats = numReps;
+        preMixColors = mixColorSet(); // re-mix the pre-mix
+        if (!renderComplete) {
+            // iterationData is only partly there, render it all again
+            generateImage();
+            return;
+        }
+        recolor(); // new pixel array from the stored iterations
+        // re-create the image
+        myImage = makeImage();
+        System.gc();
+    }
+
+
+
+    /**
+     * The cycleColorsUp method rotates the color array to the right,
+     * wrapping around.
+     *
+     * @param c how many colors to shift
+     *
+     */
+
+    public void cycleColorsUp (int c)
+    {
+        cycleColors(c);
+    }
+
+    /**
+     * The cycleColorsDown method rotates the color array to the left,
+     * wrapping around.
+     *
+     * @param c how many colors to shift
+     *
+     */
+
+    public void cycleColorsDown (int c)
+    {
+        cycleColors(-c);
+    }
+
+    /**
+     * cycleColors rotates preMixColors and recolors the frame. While a
+     * render is still writing pix and iterationData the cycle is only
+     * queued, the render does it once it completes.
+     *
+     * @param c how many colors to shift, up if positive, down if negative
+     */
+    protected void cycleColors (int c)
+    {
+        synchronized (recolorLock) {
+            if (!renderComplete) {
+                pendingCycles.add(Integer.valueOf(c));
+                return;
+            }
+            rotateColors(c);
+            recolor();
+            // regenerate image    
+            myImage = makeImage();
+        }
+        this.repaint();
+        v.notifyMe();
+        System.gc();
+    }
+
+    /**
+     * applyPendingCycles does the cycles queued while the render that
+     * just completed was running, recoloring the frame once for all
+     * of them.
+     */
+    protected void applyPendingCycles()
+    {
+        synchronized (recolorLock) {
+            if (takePendingCycles()) recolor();
+        }
+    }
+
+    /**
+     * takePendingCycles rotates preMixColors by the queued cycles and
+     * empties the queue, without recoloring.
+     *
+     * @return true if there were any
+     */
+    protected boolean takePendingCycles()
+    {
+        synchronized (recolorLock) {
+            if (pendingCycles.isEmpty()) return false;
+            for (int k = 0; k < pendingCycles.size(); k++) {
+                rotateColors(pendingCycles.get(k).intValue());
+            }
+            pendingCycles.clear();
+            return true;
+        }
+    }
+
+    /**
+     * beginRender marks the frame as being rendered, so color cycles
+     * wait for it instead of recoloring arrays still being written.
+     */
+    protected void beginRender()
+    {
+        synchronized (recolorLock) {
+            renderComplete = false;
+        }
+    }
+
+    /**
+     * rotateColors shifts preMixColors, c to the right (the colors move
+     * "up" in the fractal) if positive, -c to the left if negative,
+     * wrapping around.
+     */
+    protected void rotateColors (int c)
+    {
+        if (c > 0) {
+            int nCyc =c;
+            temp= new int [nCyc];
+            for (int i = 0; i < nCyc; i++) {
+                temp [i] = preMixColors [i];
+            }
+            for (int i = 0; i < numIter-nCyc ; i++) {
+                preMixColors [i] = preMixColors [(i+nCyc)];         
+           }
+            for (int i = 0; i < nCyc; i++) {
+                preMixColors [numIter/*-1*/-nCyc+i] = temp [i];
+            }
+        } else if (c < 0) {
+            int nCyc =  -c;
+            temp= new int [nCyc];
+            for (int i = 0; i < nCyc ; i++) {
+                temp [i] = preMixColors [numIter-nCyc+i-1];
+            }
+            for (int i = numIter-1 ; i > nCyc-1 ; i--) {
+                preMixColors [i] = preMixColors [(i-nCyc)];         
+           }
+            for (int i = 0; i < nCyc; i++) {
+                preMixColors [i] = temp [i];
+            }
+        }
+    }
+    public Image getImage()
+    {
+        return myImage;
+    }
+    public void setPower ( int p, int w, int h) {
+        power = p;
+        zoom = 1; 
+        xCenter = 0;
+        yCenter = 0;
+        redraw(w, h, 0,0,numIter,1);
+    }
+    public void setIterations( int iters ) {
+        if (resumeIndex != null && renderComplete && countsInData()) {
+            // same frame, only the cap moved: carry on from where it stopped
+            resumeIterations(iters);
+            return;
+        }
+        numIter = iters;
+        preMixColors = mixColorSet();
+        redraw(width,height,deepX,deepY,numIter,zoom);
+    }
+    public void setJulia (double juliaX, double juliaY, double centerX, 
+                          double centerY, double zoomNew, int widthNew,
+                          int heightNew, int newIterates) 
+    {
+        isMandlebrot = false;
+        this.juliaX = juliaX;
+        this.juliaY = juliaY;
+        redraw ( widthNew, heightNew, centerX, centerY, newIterates,
+                 zoomNew);
+    }   
+    public void setMand ( double centerX, double centerY, double zoomNew,
+                          int widthNew, int heightNew, int newIterates) 
+    {
+        isMandlebrot = true;
+        preMixColors = mixColorSet ();
+        redraw ( widthNew, heightNew,centerX, centerY, newIterates,
+                 zoomNew);
+    }   
+    public void setFractSize( int s ) {
+        redraw(nPix,xCenter,yCenter,zoom,numIter,useSpeedPass);
+        
+    }
+
+    public void redraw ( int w, int h,double xAtCenter,
+    double yAtCenter, int numIterates,double fractZoom)
+    { 
+        redraw(w, h, new BigDecimal(xAtCenter), new BigDecimal(yAtCenter),
+               numIterates, fractZoom);
+    }
+
+    /**
+     * This redraw keeps the center at full precision, for zooms
+     * deeper than a double can place.
+     */
+    public void redraw ( int w, int h, BigDecimal xAtCenter,
+    BigDecimal yAtCenter, int numIterates,double fractZoom)
+    { 
+        mayReuse = true; // a pan or 2x zoom shares pixels with the last frame
+        width = w;
+        height = h;
+        aspectR = (double)width/(double)height;
+        setBounds(0, 0 ,width, height);
+        zoom = fractZoom; 
+        deepX = xAtCenter;
+        deepY = yAtCenter;
+        xCenter = xAtCenter.doubleValue();
+        yCenter = yAtCenter.doubleValue();
+        if (aspectR >= 1) {
+            uLx = xCenter - 2.0/zoom; // transform center to upper left corner           
+            uLy = yCenter + 2.0/(zoom*aspectR);
+            uLxLo = lowPart(deepX, -2.0/zoom, uLx);
+            uLyLo = lowPart(deepY, 2.0/(zoom*aspectR), uLy);
+            //System.out.println("redraw Fractal= uLx= "+ uLx);
+            //System.out.println("redraw Fractal= uLy= "+ uLy);
+            //     "       "     "   "     "    "
+        } else {
+            uLx = xCenter - (2.0*aspectR)/zoom; // transform center to upper left corner
+            uLy = yCenter + 2.0/zoom; //     "       "     "   "     "    "
+            uLxLo = lowPart(deepX, -(2.0*aspectR)/zoom, uLx);
+            uLyLo = lowPart(deepY, 2.0/zoom, uLy);
+            //System.out.println("redraw Fractal= uLx= "+ uLx);
+            //System.out.println("redraw Fractal= uLy= "+ uLy);
+        }
+        if ( numIter != numIterates && !useAutoIterations) {            
+            numIter = numIterates;
+            preMixColors = mixColorSet ();            
+        }
+        yCoords = new double [height];
+        xCoords = new double [width];
+        yCoordsLo = new double [height];
+        xCoordsLo = new double [width];
+        //System.out.println("redraw Fractal= zoom= "+ zoom);
+        beginRender(); // the old frame goes
+        iterationData = new int [height * width]; // store
+        generateImage();
+         v.notifyMe();
+    }
+    
+
+    public void setSpeedPass (boolean useSpeedPass ) {
+        this.useSpeedPass = useSpeedPass;
+    }
+
+    /**
+     * Turns Mariani-Silver subdivision on or off for the next renders.
+     * It only runs when colors come from the iteration count alone
+     * (iteration based, black inside), other renders compute every pixel.
+     */
+    public void setSubdivision (boolean useSubdivision) {
+        this.useSubdivision = useSubdivision;
+    }
+
+    /**
+     * renderLater runs a change that renders (redraw, setPower,
+     * changeColors...) on this Fractal's render thread instead of the
+     * caller's. Any render still running or waiting is cancelled
+     * first: it stops within a row of pixels and leaves the old image
+     * up. Once renderLater is used every change to the Fractal should
+     * go through it or afterRender, so only the render thread touches
+     * the pixel arrays.
+     *
+     * @param change the call to make on the render thread
+     * @return the generation token of this render
+     */
+    public int renderLater(Runnable change)
+    {
+        return submitRender(change, generation.incrementAndGet());
+    }
+
+    /**
+     * afterRender runs a change on the render thread after the renders
+     * already asked for, without cancelling them.
+     *
+     * @param change the call to make on the render thread
+     */
+    public void afterRender(Runnable change)
+    {
+        submitRender(change, -1);
+    }
+
+    /**
+     * Cancels the running render, and any renderLater task that
+     * hasn't started yet.
+     */
+    public void cancelRender()
+    {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return true if the last render ran to the end, false if it was cancelled
+     */
+    public boolean isRenderComplete()
+    {
+        return renderComplete;
+    }
+
+    /**
+     * submitRender queues a task on the render thread, which is
+     * started the first time it's needed.
+     *
+     * @param gen the task's generation, -1 to take whatever is current
+     */
+    protected synchronized int submitRender(final Runnable change, final int gen)
+    {
+        if (renderExecutor == null) {
+            renderExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Fractal render");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        renderExecutor.execute(new Runnable() {
+            public void run() {
+                int current = generation.get();
+                if (gen != -1 && gen != current) return; // a newer render was asked for
+                renderGen = current;
+                inRenderTask = true;
+                try {
+                    change.run();
+                } finally {
+                    inRenderTask = false;
+                }
+            }
+        });
+        return gen;
+    }
+
+    /**
+     * checkCancelled is called between rows and tasks of a render.
+     *
+     * @throws CancellationException if the render has been cancelled
+     */
+    protected void checkCancelled()
+    {
+        if (renderGen != generation.get()) throw new CancellationException();
+    }
+
+    /**
+     * Turns progressive rendering on or off for the next renders.
+     * Full scan renders then show a 1/16 and a 1/4 resolution image
+     * through notifyMe before the full one. SpeedPass, subdivision,
+     * tracing and vector renders aren't progressive.
+     */
+    public void setProgressive (boolean useProgressive) {
+        this.useProgressive = useProgressive;
+    }
+
+    /**
+     * Turns automatic iterations on or off for the next renders. When
+     * on, the cap passed to redraw and friends is ignored and every
+     * render picks its own, see getIterations.
+     */
+    public void setAutoIterations (boolean useAutoIterations) {
+        this.useAutoIterations = useAutoIterations;
+    }
+
+    /**
+     * @return the iteration cap of the last render, the one picked
+     * when automatic iterations are on
+     */
+    public int getIterations() {
+        return numIter;
+    }
+
+    /**
+     * Turns distance estimate disk filling on or off for the next
+     * renders. Like subdivision it only runs when colors come from the
+     * iteration count alone, and only in double precision. Subdivision
+     * and boundary tracing win when they are on too.
+     */
+    public void setDistanceFill (boolean useDistanceFill) {
+        this.useDistanceFill = useDistanceFill;
+    }
+
+    /**
+     * @return pixels the last render filled from a distance estimate disk
+     */
+    public long getDistanceSkippedPixels() {
+        return distanceSkipped.get();
+    }
+
+    /**
+     * Turns boundary tracing on or off for the next renders. Like
+     * subdivision it only runs when colors come from the iteration
+     * count alone, and subdivision wins when both are on.
+     */
+    public void setBoundaryTrace (boolean useBoundaryTrace) {
+        this.useBoundaryTrace = useBoundaryTrace;
+    }
+
+    /**
+     * @return pixels the last subdivision, boundary trace or SpeedPass
+     * render filled without iterating
+     */
+    public long getFilledPixels() {
+        return pixelsFilled.get();
+    }
+
+    /**
+     * @return pixels the last subdivision or boundary trace render iterated
+     */
+    public long getComputedPixels() {
+        return pixelsComputed.get();
+    }
+
+    public void loadGradient ( int [] colors ) {
+        colorSet = colors;
+    }
+    
+    public void setPixelScheme ( int mode ) {
+        pixelColorScheme = mode;
+        redraw(width,height,deepX,deepY,numIter,zoom);
+    }
+    
+    /**
+     * Sets how many samples an edge pixel may take, up to
+     * AA_MAX_SAMPLES, and renders again. 1 turns anti-aliasing off.
+     */
+    public void setAntiAlias (int samples) {
+        antiAliasSamples = Math.max(1, Math.min(AA_MAX_SAMPLES, samples));
+        redraw(width,height,deepX,deepY,numIter,zoom);
+    }
+
+    /**
+     * @return the number of edge pixels the last render supersampled
+     */
+    public int getAntiAliasedPixels() {
+        return aaSlot == null ? 0 : aaIndex.length;
+    }
+
+    /**
+     * @return the extra samples those pixels took between them
+     */
+    public long getAntiAliasSamples() {
+        return aaSamples.get();
+    }
+
+    /**
+     * Turns the tileCache on or off for this Fractal.
+     */
+    public void setTileCache (boolean useTileCache) {
+        this.useTileCache = useTileCache;
+    }
+
+    /**
+     * @return what the last complete render cost, null before one
+     */
+    public RenderStats getRenderStats() {
+        return renderStats;
+    }
+
+    /**
+     * @return the tiles the last render took from the tileCache
+     */
+    public int getCachedTiles() {
+        return cachedTiles;
+    }
+
+    /**
+     * @return the tile cache every Fractal shares, for its counters
+     * and to change its byte budget
+     */
+    public static TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * openTileStore opens (or makes) a TileStore in dir beneath the
+     * tileCache, so tiles outlive the session, and closes it again
+     * when the program exits. A store that can't be opened, or that
+     * another viewer has open, is left out and tiles stay in memory.
+     *
+     * @param budget the most bytes the store's files may take
+     * @return true if the store is in place
+     */
+    public static boolean openTileStore(File dir, long budget) {
+        try {
+            final TileStore store = new TileStore(dir, budget);
+            tileCache.setStore(store);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    store.close();
+                }
+            });
+            return true;
+        } catch (IOException ex) {
+            System.out.println("Fractal: no tile store, tiles kept in memory only: "
+                               + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Turns smooth (fractional iteration) coloring on or off and
+     * renders again, only the iteration based scheme uses it.
+     */
+    public void setSmoothColors (boolean useSmoothColors) {
+        this.useSmoothColors = useSmoothColors;
+        redraw(width,height,deepX,deepY,numIter,zoom);
+    }
+
     /**
      * Toggles the inner colors between black
      * and angle-based schemes.
@@ -1004,7 +3400,7 @@ public class Fractal extends Component
     	} else {
     		innerPixelColorScheme = INNERCOLOR_BLACK;
     	}
-    	redraw(width,height,xCenter,yCenter,numIter,zoom);
+    	redraw(width,height,deepX,deepY,numIter,zoom);
     }
     public void paint( Graphics g )
     {
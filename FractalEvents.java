@@ -0,0 +1,84 @@
+/**
+ * FractalEvents are the Java Flight Recorder events of the render
+ * phases, so a recording (java -XX:StartFlightRecording, or jcmd
+ * JFR.start on a running viewer or TileServer) shows where a slow
+ * render spent its time and allocation. They all sit under the
+ * Fractal category and carry the frame size, power, iteration cap and
+ * the pixels the phase covered. A disabled event costs next to nothing.
+ */
+
+import jdk.jfr.*;
+
+public class FractalEvents
+{
+    /**
+     * Phase holds the fields every Fractal event has.
+     */
+    @Category("Fractal")
+    public abstract static class Phase extends Event
+    {
+        @Label("Width") int width;
+        @Label("Height") int height;
+        @Label("Power") int power;
+        @Label("Iteration Cap") int iterations;
+        @Label("Pixels") long pixels;
+    }
+
+    @Name("fractal.CoordinateMap")
+    @Label("Coordinate Pre-mapping")
+    @Description("Mapping the pixel columns and rows to the complex plane")
+    public static class CoordinateMap extends Phase
+    {
+    }
+
+    @Name("fractal.SpeedPass")
+    @Label("SpeedPass Pass")
+    @Description("One pass of the SpeedPass guessing render")
+    public static class SpeedPass extends Phase
+    {
+        @Label("Pass") int pass; // 1 or 2
+        @Label("Guessed Pixels") long guessed;
+    }
+
+    @Name("fractal.Tile")
+    @Label("Render Tile")
+    @Description("One tile of a tiled render, or one level of it in a progressive render")
+    public static class Tile extends Phase
+    {
+        @Label("X") int x;
+        @Label("Y") int y;
+        @Label("Level Step") int level; // pixel spacing of a progressive level, 0 if not
+    }
+
+    @Name("fractal.MixColors")
+    @Label("Mix Color Set")
+    @Description("Mixing the palette into one color per iteration count")
+    public static class MixColors extends Phase
+    {
+        @Label("Color Mode") int colorMode;
+        @Label("Color Repeats") int colorRepeats;
+    }
+
+    @Name("fractal.Recolor")
+    @Label("Recolor")
+    @Description("Coloring the frame again from the stored iterations")
+    public static class Recolor extends Phase
+    {
+    }
+
+    @Name("fractal.CreateImage")
+    @Label("Create Image")
+    @Description("Making the Image of the pixel array through a MemoryImageSource")
+    public static class CreateImage extends Phase
+    {
+    }
+
+    @Name("fractal.PngWrite")
+    @Label("PNG Write")
+    @Description("Encoding a frame to a PNG file")
+    public static class PngWrite extends Phase
+    {
+        @Label("File") String file;
+        @Label("Bytes") @DataAmount long bytes;
+    }
+}
@@ -0,0 +1,268 @@
+import java.math.*;
+
+/**
+ * PerturbationEngine renders zooms too deep for plain doubles. One
+ * reference orbit is iterated in BigDecimal at the precision the zoom
+ * needs and kept as doubles, then every pixel only iterates its
+ * double-precision difference d from that orbit:
+ *
+ *   d' = (Z + d)^power - Z^power + dc
+ *
+ * so a pixel costs about the same as plain double iteration at any
+ * depth. A pixel whose orbit gets much closer to zero than the
+ * reference (|Z + d|^2 < GLITCH_TOLERANCE * |Z|^2), or that outlives
+ * the reference, has lost its precision and is flagged as glitched so
+ * Fractal can redo it against a new reference inside the glitch.
+ */
+
+public class PerturbationEngine
+{
+    public static final double GLITCH_TOLERANCE = 1e-6;
+    public static final int GUARD_DIGITS = 20; // digits kept past the pixel size
+    public static final int CANCEL_EVERY = 256; // reference iterations between cancel checks
+
+    private int power;
+    private boolean isMandlebrot;
+    private BigDecimal juliaX, juliaY; // julia constant
+    private int numIter;
+    private BigDecimal centerX, centerY; // full precision center of the frame
+    private double centerPx, centerPy; // pixel position of the center
+    private double xStep, yStep; // size of a pixel in the complex plane
+    private MathContext mc; // precision of the reference orbit
+    private double [] binom; // binomial coefficients C(power, k)
+
+    private double [] refX, refY; // reference orbit Z_0 to Z_refLength-1
+    private double [] glitchMag; // GLITCH_TOLERANCE * |Z_n|^2
+    private int refLength;
+    private double refPx, refPy; // pixel position of the reference point
+    private int references; // reference orbits computed so far
+    private Runnable cancelCheck; // run while a reference orbit is iterated, null for none
+
+    /**
+     * @param centerX full precision real part of the frame center
+     * @param centerY full precision imaginary part of the frame center
+     * @param centerPx pixel column the center falls on
+     * @param centerPy pixel row the center falls on
+     * @param xStep width of a pixel in the complex plane
+     * @param yStep height of a pixel in the complex plane
+     * @param power the power to raise z to (>=2)
+     * @param isMandlebrot true for Mandlebrot, false for Julia set.
+     * @param juliaX real part of the Julia constant
+     * @param juliaY imaginary part of the Julia constant
+     * @param numIter the iteration cap
+     */
+    public PerturbationEngine(BigDecimal centerX, BigDecimal centerY,
+                              double centerPx, double centerPy,
+                              double xStep, double yStep, int power,
+                              boolean isMandlebrot, double juliaX,
+                              double juliaY, int numIter)
+    {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerPx = centerPx;
+        this.centerPy = centerPy;
+        this.xStep = xStep;
+        this.yStep = yStep;
+        this.power = power;
+        this.isMandlebrot = isMandlebrot;
+        this.juliaX = new BigDecimal(juliaX);
+        this.juliaY = new BigDecimal(juliaY);
+        this.numIter = numIter;
+        int digits = (int)Math.ceil(-Math.log10(Math.min(xStep, yStep)));
+        mc = new MathContext(Math.max(digits, 0) + GUARD_DIGITS);
+        binom = new double [power + 1];
+        binom[0] = 1;
+        for (int k = 1; k <= power; k++) {
+            binom[k] = binom[k-1] * (power - k + 1) / k;
+        }
+    }
+
+    /**
+     * setCancelCheck gives the engine a check to run every CANCEL_EVERY
+     * iterations of a reference orbit, which takes seconds at high caps.
+     * The check stops the orbit by throwing (Fractal's throws a
+     * CancellationException); the engine is of no use after that.
+     *
+     * @param cancelCheck the check, null for none
+     */
+    public void setCancelCheck(Runnable cancelCheck)
+    {
+        this.cancelCheck = cancelCheck;
+    }
+
+    /**
+     * setReference iterates a new reference orbit in BigDecimal from
+     * the point under a pixel, later pixels are measured from it.
+     *
+     * @param px pixel column of the reference point (may be fractional)
+     * @param py pixel row of the reference point (may be fractional)
+     * @throws RuntimeException whatever the cancel check throws
+     */
+    public void setReference(double px, double py)
+    {
+        refPx = px;
+        refPy = py;
+        BigDecimal rx = centerX.add(new BigDecimal((px - centerPx)*xStep), mc);
+        BigDecimal ry = centerY.subtract(new BigDecimal((py - centerPy)*yStep), mc);
+        BigDecimal zx, zy, cx, cy;
+        if (isMandlebrot) {
+            zx = BigDecimal.ZERO;
+            zy = BigDecimal.ZERO;
+            cx = rx;
+            cy = ry;
+        } else {
+            zx = rx;
+            zy = ry;
+            cx = juliaX;
+            cy = juliaY;
+        }
+        if (refX == null) {
+            refX = new double [numIter + 1];
+            refY = new double [numIter + 1];
+            glitchMag = new double [numIter + 1];
+        }
+        int n = 0;
+        store(n, zx, zy);
+        while (n < numIter) {
+            if (cancelCheck != null && n % CANCEL_EVERY == 0) cancelCheck.run();
+            BigDecimal [] p = pow(zx, zy);
+            zx = p[0].add(cx, mc);
+            zy = p[1].add(cy, mc);
+            n++;
+            store(n, zx, zy);
+            if (refX[n]*refX[n] + refY[n]*refY[n] > 4) break; // reference escaped
+        }
+        refLength = n + 1;
+        references++;
+    }
+
+    private void store(int n, BigDecimal zx, BigDecimal zy)
+    {
+        refX[n] = zx.doubleValue();
+        refY[n] = zy.doubleValue();
+        glitchMag[n] = GLITCH_TOLERANCE * (refX[n]*refX[n] + refY[n]*refY[n]);
+    }
+
+    /**
+     * pow raises a BigDecimal complex number to power by repeated squaring.
+     *
+     * @return { real, imaginary }
+     */
+    private BigDecimal [] pow(BigDecimal zx, BigDecimal zy)
+    {
+        BigDecimal sx = zx;
+        BigDecimal sy = zy;
+        BigDecimal rx = null;
+        BigDecimal ry = null;
+        int e = power;
+        while (true) {
+            if ((e & 1) != 0) {
+                if (rx == null) {
+                    rx = sx;
+                    ry = sy;
+                } else {
+                    BigDecimal t = rx.multiply(sx, mc).subtract(ry.multiply(sy, mc), mc);
+                    ry = rx.multiply(sy, mc).add(ry.multiply(sx, mc), mc);
+                    rx = t;
+                }
+            }
+            e >>>= 1;
+            if (e == 0) break;
+            BigDecimal t = sx.multiply(sx, mc).subtract(sy.multiply(sy, mc), mc);
+            sy = sx.multiply(sy, mc).multiply(BigDecimal.valueOf(2), mc);
+            sx = t;
+        }
+        return new BigDecimal [] { rx, ry };
+    }
+
+    /**
+     * iterate runs one pixel against the current reference orbit.
+     * o.glitched is set if the result can't be trusted.
+     *
+     * @param x the pixel column, fractional for a point inside the pixel
+     * @param y the pixel row, fractional for a point inside the pixel
+     * @param o receives the final z (reference plus difference)
+     * @return the iteration the orbit escaped at, numIter if it never did
+     */
+    public int iterate(double x, double y, Fractal.Orbit o)
+    {
+        double dcx = (x - refPx)*xStep; // pixel minus reference
+        double dcy = (refPy - y)*yStep;
+        double dx = 0;
+        double dy = 0;
+        if (!isMandlebrot) {
+            // julia: the difference starts in z, c is the same for all
+            dx = dcx;
+            dy = dcy;
+            dcx = 0;
+            dcy = 0;
+        }
+        double [] rx = refX;
+        double [] ry = refY;
+        int last = refLength - 1;
+        boolean glitched = false;
+        double zx = rx[0] + dx;
+        double zy = ry[0] + dy;
+        int i;
+        for (i = 0; i < numIter; i++) {
+            if (i >= last) {
+                glitched = true; // outlived the reference
+                break;
+            }
+            double Zx = rx[i];
+            double Zy = ry[i];
+            if (power == 2) {
+                // (2Z + d) d + dc
+                double tx = Zx + Zx + dx;
+                double ty = Zy + Zy + dy;
+                double tempdx = tx*dx - ty*dy + dcx;
+                dy = tx*dy + ty*dx + dcy;
+                dx = tempdx;
+            } else {
+                // d * sum C(p,k) Z^(p-k) d^(k-1), Horner in d
+                double ax = 1;
+                double ay = 0;
+                double wx = Zx; // Z^(p-k)
+                double wy = Zy;
+                for (int k = power - 1; k >= 1; k--) {
+                    double t = ax*dx - ay*dy;
+                    ay = ax*dy + ay*dx + binom[k]*wy;
+                    ax = t + binom[k]*wx;
+                    if (k > 1) {
+                        t = wx*Zx - wy*Zy;
+                        wy = wx*Zy + wy*Zx;
+                        wx = t;
+                    }
+                }
+                double tempdx = ax*dx - ay*dy + dcx;
+                dy = ax*dy + ay*dx + dcy;
+                dx = tempdx;
+            }
+            zx = rx[i+1] + dx;
+            zy = ry[i+1] + dy;
+            double mag = zx*zx + zy*zy;
+            if (mag > 4) break; // the "escape value"
+            if (mag < glitchMag[i+1]) glitched = true;
+        }
+        o.zx = zx;
+        o.zy = zy;
+        o.glitched = glitched;
+        return i;
+    }
+
+    /**
+     * @return reference orbits computed for this render
+     */
+    public int getReferenceCount()
+    {
+        return references;
+    }
+
+    /**
+     * @return decimal digits the reference orbits are computed with
+     */
+    public int getPrecision()
+    {
+        return mc.getPrecision();
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * RenderMonitor adds up the RenderStats of every render in the JVM,
+ * so throughput can be watched over JMX (jconsole, or any JMX client)
+ * on a host that renders for days. There is one, shared by every
+ * Fractal; it registers itself with the platform MBean server the
+ * first time it is asked for.
+ */
+
+import java.lang.management.*;
+import javax.management.*;
+
+public class RenderMonitor implements RenderMonitorMBean
+{
+    public static final String OBJECT_NAME = "Fractal:type=RenderMonitor";
+
+    private static RenderMonitor monitor; // the one, null until asked for
+
+    private long renders, wallNanos, cpuNanos, computed, inferred, reused,
+                 iterations, skipped, interior, allocated;
+    private RenderStats last; // newest render, null if none
+
+    /**
+     * @return the shared monitor, registered as OBJECT_NAME if the
+     * platform MBean server lets it
+     */
+    public static synchronized RenderMonitor getMonitor()
+    {
+        if (monitor == null) {
+            monitor = new RenderMonitor();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(monitor,
+                    new ObjectName(OBJECT_NAME));
+            } catch (Exception ex) {
+                // already there from another class loader, or no JMX: count anyway
+            }
+        }
+        return monitor;
+    }
+
+    /**
+     * record adds a finished render to the totals.
+     */
+    public synchronized void record(RenderStats s)
+    {
+        renders++;
+        wallNanos += s.wallNanos;
+        if (s.cpuNanos > 0) cpuNanos += s.cpuNanos;
+        computed += s.pixelsComputed;
+        inferred += s.pixelsInferred;
+        reused += s.pixelsReused;
+        iterations += s.iterations;
+        skipped += s.iterationsSkipped;
+        interior += s.interiorPixels;
+        if (s.allocatedBytes > 0) allocated += s.allocatedBytes;
+        last = s;
+    }
+
+    public synchronized RenderStats getLast() {
+        return last;
+    }
+
+    public synchronized long getRenderCount() {
+        return renders;
+    }
+
+    public synchronized long getTotalWallMillis() {
+        return wallNanos / 1000000;
+    }
+
+    public synchronized long getTotalCpuMillis() {
+        return cpuNanos / 1000000;
+    }
+
+    public synchronized long getTotalPixelsComputed() {
+        return computed;
+    }
+
+    public synchronized long getTotalPixelsInferred() {
+        return inferred;
+    }
+
+    public synchronized long getTotalPixelsReused() {
+        return reused;
+    }
+
+    public synchronized long getTotalIterations() {
+        return iterations;
+    }
+
+    public synchronized long getTotalIterationsSkipped() {
+        return skipped;
+    }
+
+    public synchronized long getTotalInteriorPixels() {
+        return interior;
+    }
+
+    public synchronized long getTotalAllocatedBytes() {
+        return allocated;
+    }
+
+    public synchronized double getMegapixelsPerSecond() {
+        return (computed + inferred + reused) / (double)Math.max(wallNanos, 1) * 1e3;
+    }
+
+    public synchronized double getIterationsPerSecond() {
+        return iterations / (double)Math.max(wallNanos, 1) * 1e9;
+    }
+
+    public synchronized long getLastWallMillis() {
+        return last == null ? 0 : last.wallNanos / 1000000;
+    }
+
+    public synchronized double getLastMegapixelsPerSecond() {
+        return last == null ? 0 : last.getMegapixelsPerSecond();
+    }
+
+    public synchronized double getLastIterationsPerSecond() {
+        return last == null ? 0 : last.getIterationsPerSecond();
+    }
+
+    public synchronized int getLastMaxIteration() {
+        return last == null ? 0 : last.maxIteration;
+    }
+
+    public synchronized String getLastRender() {
+        return last == null ? "" : last.toString();
+    }
+
+    public synchronized void reset()
+    {
+        renders = wallNanos = cpuNanos = computed = inferred = reused = 0;
+        iterations = skipped = interior = allocated = 0;
+        last = null;
+    }
+}
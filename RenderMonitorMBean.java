@@ -0,0 +1,56 @@
+/**
+ * RenderMonitorMBean is the JMX view of a RenderMonitor, registered
+ * as Fractal:type=RenderMonitor. Totals run from the start or the
+ * last reset, the Last attributes are the newest render.
+ */
+
+public interface RenderMonitorMBean
+{
+    public long getRenderCount();
+
+    public long getTotalWallMillis();
+
+    public long getTotalCpuMillis();
+
+    public long getTotalPixelsComputed();
+
+    public long getTotalPixelsInferred();
+
+    public long getTotalPixelsReused();
+
+    public long getTotalIterations();
+
+    public long getTotalIterationsSkipped();
+
+    public long getTotalInteriorPixels();
+
+    public long getTotalAllocatedBytes();
+
+    /**
+     * @return megapixels per second of wall time over all renders
+     */
+    public double getMegapixelsPerSecond();
+
+    /**
+     * @return iterations per second of wall time over all renders
+     */
+    public double getIterationsPerSecond();
+
+    public long getLastWallMillis();
+
+    public double getLastMegapixelsPerSecond();
+
+    public double getLastIterationsPerSecond();
+
+    public int getLastMaxIteration();
+
+    /**
+     * @return the newest render's RenderStats on one line, "" if none
+     */
+    public String getLastRender();
+
+    /**
+     * reset zeroes the totals and forgets the last render.
+     */
+    public void reset();
+}
@@ -0,0 +1,169 @@
+/**
+ * RenderStats is what one finished render of a Fractal cost: wall and
+ * CPU time, where its pixels came from (iterated, inferred by a
+ * guessing mode, or reused from the last render and the tile cache),
+ * the iteration counts of the frame and the bytes allocated while it
+ * ran. Fractal makes one at the end of every complete render and hands
+ * it to the RenderMonitor.
+ * CPU time and allocation are process wide, so renders running at the
+ * same time (TileServer, BatchRender) each count the others' work too.
+ * They are -1 where the JVM can't measure them.
+ */
+
+import java.lang.management.*;
+
+public class RenderStats
+{
+    final int width, height, power, numIter;
+    final long wallNanos; // start to finished image
+    final long cpuNanos; // process CPU time while rendering, -1 if unknown
+    final long pixelsComputed; // pixels iterated
+    final long pixelsInferred; // pixels a guessing mode filled without iterating
+    final long pixelsReused; // pixels copied from the last render or the tile cache
+    final long iterations; // escape counts of the pixels iterated, inside ones at the cap
+    final long iterationsSkipped; // iterations the periodicity check cut short
+    final long interiorPixels; // pixels iterated that reached the cap
+    final int maxIteration; // highest count of a pixel iterated that escaped, 0 if none did
+    final long allocatedBytes; // bytes allocated while rendering, -1 if unknown
+
+    public RenderStats(int width, int height, int power, int numIter, long wallNanos,
+        long cpuNanos, long pixelsComputed, long pixelsInferred, long pixelsReused,
+        long iterations, long iterationsSkipped, long interiorPixels, int maxIteration,
+        long allocatedBytes)
+    {
+        this.width = width;
+        this.height = height;
+        this.power = power;
+        this.numIter = numIter;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.pixelsComputed = pixelsComputed;
+        this.pixelsInferred = pixelsInferred;
+        this.pixelsReused = pixelsReused;
+        this.iterations = iterations;
+        this.iterationsSkipped = iterationsSkipped;
+        this.interiorPixels = interiorPixels;
+        this.maxIteration = maxIteration;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPower() {
+        return power;
+    }
+
+    public int getIterationCap() {
+        return numIter;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getPixelsComputed() {
+        return pixelsComputed;
+    }
+
+    public long getPixelsInferred() {
+        return pixelsInferred;
+    }
+
+    public long getPixelsReused() {
+        return pixelsReused;
+    }
+
+    public long getIterations() {
+        return iterations;
+    }
+
+    public long getIterationsSkipped() {
+        return iterationsSkipped;
+    }
+
+    public long getInteriorPixels() {
+        return interiorPixels;
+    }
+
+    public int getMaxIteration() {
+        return maxIteration;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return megapixels of the frame per second of wall time
+     */
+    public double getMegapixelsPerSecond()
+    {
+        return width * (double)height / Math.max(wallNanos, 1) * 1e3;
+    }
+
+    /**
+     * @return iterations per second of wall time
+     */
+    public double getIterationsPerSecond()
+    {
+        return iterations / (double)Math.max(wallNanos, 1) * 1e9;
+    }
+
+    /**
+     * @return CPU time of the whole process so far in ns, -1 if the
+     * JVM doesn't say
+     */
+    public static long processCpuNanos()
+    {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * @return bytes the live threads have allocated so far, -1 if the
+     * JVM doesn't count them
+     */
+    public static long allocatedBytes()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+        if (!t.isThreadAllocatedMemorySupported() || !t.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long [] bytes = t.getThreadAllocatedBytes(t.getAllThreadIds());
+        long sum = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] > 0) sum += bytes[i]; // -1 for a thread that died
+        }
+        return sum;
+    }
+
+    /**
+     * @return the stats on one line, for a status bar
+     */
+    public String toString()
+    {
+        return width + "x" + height + "  " + wallNanos / 1000000 + " ms"
+            + (cpuNanos >= 0 ? " (cpu " + cpuNanos / 1000000 + ")" : "")
+            + "  " + Math.round(getMegapixelsPerSecond() * 10) / 10.0 + " MPix/s  "
+            + Math.round(getIterationsPerSecond() / 1e5) / 10.0 + " Miter/s  "
+            + pixelsComputed + " iterated, " + pixelsInferred + " guessed, "
+            + pixelsReused + " reused  " + interiorPixels + " inside, max "
+            + maxIteration + "/" + numIter
+            + (allocatedBytes >= 0 ? "  " + (allocatedBytes >> 20) + " MB allocated" : "");
+    }
+}
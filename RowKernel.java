@@ -0,0 +1,35 @@
+/**
+ * RowKernel iterates a run of points from one row of a Fractal at
+ * once, so a kernel can work on several pixels per instruction.
+ * Fractal loads implementations by name and falls back to its
+ * scalar EscapeKernel when none can be loaded.
+ */
+
+public interface RowKernel
+{
+    /**
+     * All arrays must have room past count for a whole number of
+     * lanes, Fractal passes arrays of Fractal.TILE_SIZE entries.
+     */
+    public static final int ARRAY_MULTIPLE = 64;
+
+    /**
+     * iterateRow runs z = z^power + c for points 0 to count-1 until
+     * each has |z| > 2 or numIter iterations.
+     *
+     * @param zx starting real parts of z, receives the final ones
+     * @param zy starting imaginary parts of z, receives the final ones
+     * @param cx real parts of c
+     * @param cy imaginary parts of c
+     * @param count number of points
+     * @param power the power to raise z to (>=2)
+     * @param numIter the iteration cap
+     * @param done points already known, they are left alone
+     * @param iters receives the escape iteration, numIter if it never did
+     */
+    public void iterateRow(double [] zx, double [] zy, double [] cx, double [] cy,
+                           int count, int power, int numIter,
+                           boolean [] done, int [] iters);
+
+    public String getDescription();
+}
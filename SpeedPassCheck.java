@@ -0,0 +1,177 @@
+/**
+ * SpeedPassCheck renders a few scenes with every pixelColorScheme,
+ * both inner color schemes and smooth colors, once with SpeedPass and
+ * once with the full scan, and checks the two frames agree. Every
+ * pixel SpeedPass iterated has to have the same iterationData and the
+ * same color as the full scan, and no pixel may be left unset. The
+ * pixels it guessed (pass two pixels off the edge whose four neighbors
+ * agree in iterationData and color) have to hold exactly the value of
+ * the neighbor they copied, and may differ from the full scan only
+ * where the guess missed detail between the neighbors: at most
+ * MAX_MISSED of the frame per case.
+ * It exits with 1 if any case fails, so a build can run it.
+ * Run with: java -Djava.awt.headless=true SpeedPassCheck [width] [height]
+ */
+
+public class SpeedPassCheck implements FractalViewer
+{
+    public static final int ITERATIONS = 500;
+    public static final int SHOWN = 5; // wrong pixels printed per case
+    public static final double MAX_MISSED = 0.001; // share of the frame a guess may get wrong
+
+    // name, center x, center y, zoom, power, mandlebrot (1) or julia (0)
+    public static final Object [][] SCENES = {
+        { "default view",    -0.5,   0.0,    1.0,  2, 1 },
+        { "seahorse valley", -0.743643887037, 0.131825904205, 1e5, 2, 1 },
+        { "julia",            0.0,   0.0,    1.0,  2, 0 },
+        { "power 3",          0.0,   0.0,    1.0,  3, 1 },
+    };
+    public static final double JULIA_X = -0.8; // julia c of the julia scenes
+    public static final double JULIA_Y = 0.156;
+
+    public static void main(String args[])
+    {
+        int width = 203; // odd, so the staggered passes end on both parities
+        int height = 151;
+        if (args.length > 0) width = Integer.parseInt(args[0]);
+        if (args.length > 1) height = Integer.parseInt(args[1]);
+        int [] colors = new RainbowGradient().getGradient();
+        SpeedPassCheck viewer = new SpeedPassCheck();
+        int cases = 0;
+        int failed = 0;
+        for (int s = 0; s < SCENES.length; s++) {
+            for (int inner = Fractal.INNERCOLOR_BLACK; inner <= Fractal.INNERCOLOR_ANGLE_BASED; inner++) {
+                for (int scheme = 0; scheme <= Fractal.PIXEL_ITER_SHIFT_SIN_BASED; scheme++) {
+                    for (int smooth = 0; smooth < 2; smooth++) {
+                        if (smooth == 1 && scheme != Fractal.PIXEL_ITERATION_BASED) continue;
+                        Fractal full = render(SCENES[s], width, height, colors, scheme, inner,
+                                              smooth == 1, false, viewer);
+                        Fractal fast = render(SCENES[s], width, height, colors, scheme, inner,
+                                              smooth == 1, true, viewer);
+                        String name = SCENES[s][0] + ", scheme " + scheme + ", inner " + inner
+                            + (smooth == 1 ? ", smooth" : "");
+                        cases++;
+                        if (!compare(name, full, fast)) failed++;
+                    }
+                }
+            }
+        }
+        System.out.println(cases + " cases, " + failed + " failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return a Fractal of the scene, rendered
+     */
+    private static Fractal render(Object [] scene, int width, int height, int [] colors,
+        int scheme, int inner, boolean smooth, boolean speedPass, FractalViewer viewer)
+    {
+        Fractal f = new Fractal(width, height,
+            ((Double)scene[1]).doubleValue(), ((Double)scene[2]).doubleValue(),
+            ((Double)scene[3]).doubleValue(), colors, ITERATIONS, 1, 1,
+            ((Integer)scene[4]).intValue(), ((Integer)scene[5]).intValue() == 1,
+            JULIA_X, JULIA_Y, speedPass, viewer);
+        f.setTileCache(false);
+        f.pixelColorScheme = scheme;
+        f.innerPixelColorScheme = inner;
+        f.useSmoothColors = smooth;
+        f.generateImage();
+        return f;
+    }
+
+    /**
+     * compare checks the SpeedPass frame against the full scan.
+     *
+     * @return true if every pixel SpeedPass didn't guess matches, every
+     * guess copied its neighbor, few enough guesses missed and the
+     * guesses add up to the pixels it says it filled
+     */
+    private static boolean compare(String name, Fractal full, Fractal fast)
+    {
+        int width = fast.width;
+        int height = fast.height;
+        int [] pix = fast.getPix();
+        int [] data = fast.iterationData;
+        int [] fullPix = full.getPix();
+        int [] fullData = full.iterationData;
+        int guessed = 0;
+        int missed = 0; // guesses the full scan disagrees with
+        int wrong = 0;
+        StringBuffer shown = new StringBuffer();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y*width + x;
+                if (pix[index] == 0) {
+                    wrong++;
+                    if (wrong <= SHOWN) shown.append("  " + x + "," + y + " unset\n");
+                    continue;
+                }
+                if (wasGuessed(x, y, width, height, data, pix)) {
+                    guessed++;
+                    if (pix[index] != pix[index+1] || data[index] != data[index+1]) {
+                        wrong++;
+                        if (wrong <= SHOWN) {
+                            shown.append("  " + x + "," + y + " guessed "
+                                + Integer.toHexString(pix[index]) + "/" + data[index]
+                                + ", its neighbor has " + Integer.toHexString(pix[index+1])
+                                + "/" + data[index+1] + "\n");
+                        }
+                    } else if (pix[index] != fullPix[index] || data[index] != fullData[index]) {
+                        missed++;
+                    }
+                    continue;
+                }
+                if (pix[index] != fullPix[index] || data[index] != fullData[index]) {
+                    wrong++;
+                    if (wrong <= SHOWN) {
+                        shown.append("  " + x + "," + y + " color "
+                            + Integer.toHexString(pix[index]) + " not "
+                            + Integer.toHexString(fullPix[index]) + ", data "
+                            + data[index] + " not " + fullData[index] + "\n");
+                    }
+                }
+            }
+        }
+        if (guessed != fast.getFilledPixels()) {
+            System.out.println(name + ": " + guessed + " pixels look guessed, SpeedPass says "
+                               + fast.getFilledPixels());
+            return false;
+        }
+        if (wrong > 0) {
+            System.out.println(name + ": " + wrong + " wrong pixels\n" + shown);
+            return false;
+        }
+        int allowed = (int)(MAX_MISSED * width * height);
+        System.out.println(name + ": " + guessed + " guessed, " + missed + " missed"
+                           + (missed > allowed ? ", more than " + allowed : ""));
+        return missed <= allowed;
+    }
+
+    /**
+     * wasGuessed tells if SpeedPass took the pixel from its neighbors:
+     * it is a pass two pixel off the edge and its neighbors, which
+     * pass one iterated, agree.
+     */
+    private static boolean wasGuessed(int x, int y, int width, int height,
+                                      int [] data, int [] pix)
+    {
+        if ((x + y) % 2 == 0) return false; // pass one
+        if (x == 0 || y == 0 || x == width - 1 || y == height - 1) return false;
+        int index = y*width + x;
+        int d = data[index+1];
+        int c = pix[index+1];
+        return d == data[index-1] && d == data[index-width] && d == data[index+width]
+            && c == pix[index-1] && c == pix[index-width] && c == pix[index+width];
+    }
+
+    public Object getFrame() {
+        return null;
+    }
+
+    public String getFrameTitle() {
+        return "SpeedPassCheck";
+    }
+
+    public void notifyMe() {
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * TileCache holds the iterationData (and smoothData) of rendered tiles
+ * under a byte budget, so a view that comes back (zooming back out,
+ * toggling between Mandlebrot and Julia, a palette change that forced
+ * a render) gets its tiles without iterating. Only values are kept,
+ * the colors are made fresh from the current palette. When the budget
+ * runs out the least recently used tiles go first.
+ * A TileStore can sit beneath it, keeping tiles across sessions: a
+ * miss here is looked up there, and tiles put here are written there.
+ * Render workers share one cache, so it is synchronized; the store is
+ * read and written outside the cache's lock, a disk write never holds
+ * up the other workers' lookups.
+ */
+
+import java.util.*;
+
+public class TileCache
+{
+    public static final long DEFAULT_BUDGET = 64L << 20; // 64 MB
+    public static final int ENTRY_OVERHEAD = 96; // bytes of map entry and array headers, about
+
+    private LinkedHashMap<String, Tile> tiles =
+        new LinkedHashMap<String, Tile>(256, 0.75f, true); // access order
+    private long budget; // most bytes of tiles kept
+    private long bytes; // bytes of tiles kept now
+    private long hits, misses, evictions;
+    private TileStore store; // tiles on disk, null if none
+
+    /**
+     * @param budget the most bytes the cached tiles may take
+     */
+    public TileCache(long budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Tile is the part of one lattice tile a render had on screen,
+     * w by h values row by row starting x, y into the tile.
+     */
+    public static class Tile
+    {
+        final int x, y, w, h;
+        final int [] data; // iterationData values
+        final float [] smooth; // smoothData values, null if the render had none
+        final long bytes; // what it counts against the budget
+
+        public Tile(int x, int y, int w, int h, int [] data, float [] smooth, String key)
+        {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.data = data;
+            this.smooth = smooth;
+            bytes = ENTRY_OVERHEAD + 2L*key.length() + 4L*data.length
+                + (smooth != null ? 4L*smooth.length : 0);
+        }
+
+        /**
+         * @return true if this holds all of the w by h block x, y into the tile
+         */
+        public boolean covers(int x, int y, int w, int h)
+        {
+            return this.x <= x && this.y <= y
+                && this.x + this.w >= x + w && this.y + this.h >= y + h;
+        }
+    }
+
+    /**
+     * @return the tile under key if it holds all of the w by h block
+     * x, y into the tile, else null (a miss)
+     */
+    public Tile get(String key, int x, int y, int w, int h)
+    {
+        TileStore s;
+        synchronized (this) {
+            Tile t = tiles.get(key);
+            if (t != null && t.covers(x, y, w, h)) {
+                hits++;
+                return t;
+            }
+            misses++;
+            s = store;
+        }
+        if (s == null) return null;
+        Tile t = s.get(key); // the store counts its own hits
+        if (t == null || !t.covers(x, y, w, h)) return null;
+        synchronized (this) {
+            keep(key, t);
+        }
+        return t;
+    }
+
+    /**
+     * @return the tile under key, null if there is none, without
+     * counting a hit or a miss
+     */
+    public synchronized Tile peek(String key)
+    {
+        return tiles.get(key);
+    }
+
+    /**
+     * put caches a tile under key, replacing any tile there, and evicts
+     * the least recently used tiles until the cache fits its budget.
+     * A tile bigger than the whole budget is not kept.
+     */
+    public void put(String key, Tile t)
+    {
+        TileStore s;
+        synchronized (this) {
+            keep(key, t);
+            s = store;
+        }
+        if (s != null) s.put(key, t); // disk, outside the lock
+    }
+
+    /**
+     * keep is put without writing the tile to the store.
+     */
+    private void keep(String key, Tile t)
+    {
+        if (t.bytes > budget) return;
+        Tile old = tiles.put(key, t);
+        if (old != null) bytes -= old.bytes;
+        bytes += t.bytes;
+        trim();
+    }
+
+    /**
+     * setBudget changes the byte budget, evicting down to it at once.
+     */
+    public synchronized void setBudget(long budget)
+    {
+        this.budget = Math.max(0, budget);
+        trim();
+    }
+
+    /**
+     * trim drops tiles from the least recently used end until the
+     * cache is within its budget.
+     */
+    private void trim()
+    {
+        Iterator<Tile> it = tiles.values().iterator();
+        while (bytes > budget && it.hasNext()) {
+            Tile t = it.next();
+            it.remove();
+            bytes -= t.bytes;
+            evictions++;
+        }
+    }
+
+    /**
+     * setStore puts a TileStore beneath the cache, null for none.
+     */
+    public synchronized void setStore(TileStore store)
+    {
+        this.store = store;
+    }
+
+    public synchronized TileStore getStore() {
+        return store;
+    }
+
+    /**
+     * clear empties the cache, the counters keep running.
+     */
+    public synchronized void clear()
+    {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public String toString()
+    {
+        return "TileCache " + size() + " tiles, " + getBytes() + "/" + getBudget()
+            + " bytes, " + getHits() + " hits, " + getMisses() + " misses, "
+            + getEvictions() + " evictions";
+    }
+}
@@ -0,0 +1,372 @@
+/**
+ * TileServer serves fractal tiles over HTTP the way a map server does,
+ * from GET /tile/{z}/{x}/{y}.png, for one power, Mandlebrot or Julia
+ * set and palette given when it starts. At zoom level z the 4x4 square
+ * a Fractal shows at zoom 1 is cut into 2^z by 2^z tiles of TILE_PIXELS,
+ * x running right and y down from the top left. Every tile of a server
+ * uses the same iteration cap, so the colors match across tiles.
+ *
+ * Tiles are rendered on a bounded pool of workers, a request that finds
+ * the queue full gets 503. Requests for a tile already being rendered
+ * wait for that render instead of starting another. Responses carry an
+ * ETag made from the server's settings and the tile, and may be cached
+ * for good since a tile never changes; an If-None-Match of "*" or
+ * listing the tag (weak or not) gets 304 without rendering. GET /stats shows the counters.
+ * It only listens on the loopback address.
+ * Run with: java -Djava.awt.headless=true TileServer [-port n] [-power n]
+ *           [-julia x y] [-palette n] [-iterations n] [-colorrepeats n]
+ *           [-colormode n] [-workers n] [-queue n]
+ */
+
+import com.sun.net.httpserver.*;
+import java.awt.image.*;
+import java.io.*;
+import java.math.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+import javax.imageio.*;
+
+public class TileServer implements FractalViewer, HttpHandler
+{
+    public static final int TILE_PIXELS = 256; // edge of a tile
+    public static final int MAX_ZOOM = 62; // deepest zoom level served
+    public static final int DEFAULT_PORT = 8080;
+    public static final int HTTP_THREADS = 16; // requests handled at once
+    public static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private int power = 2;
+    private boolean isMandlebrot = true;
+    private double juliaX, juliaY;
+    private int palette = 1;
+    private int [] colors;
+    private int numIter = 1000;
+    private int colorRepeats = 2;
+    private int colorMode = 1;
+    private BigDecimal originX, originY; // center of the zoom 0 tile
+    private String settings; // everything besides z, x and y a tile depends on
+
+    private HttpServer server;
+    private ThreadPoolExecutor workers; // the renders
+    private ExecutorService handlers; // the HTTP exchanges
+    private ConcurrentHashMap<String, FutureTask<byte []>> inFlight =
+        new ConcurrentHashMap<String, FutureTask<byte []>>(); // tile to its render
+    private AtomicLong requests = new AtomicLong(); // tile requests
+    private AtomicLong renders = new AtomicLong(); // tiles rendered
+    private AtomicLong shared = new AtomicLong(); // requests that waited on another's render
+    private AtomicLong notModified = new AtomicLong(); // 304s
+    private AtomicLong rejected = new AtomicLong(); // 503s
+
+    public static void main(String args[]) throws IOException
+    {
+        System.setProperty("java.awt.headless", "true");
+        TileServer t = new TileServer();
+        int port = DEFAULT_PORT;
+        int workers = Fractal.getRenderThreads();
+        int queue = 64;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-port")) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-power")) {
+                    t.power = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-julia")) {
+                    t.isMandlebrot = false;
+                    t.juliaX = Double.parseDouble(args[++i]);
+                    t.juliaY = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("-palette")) {
+                    t.palette = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-iterations")) {
+                    t.numIter = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-colorrepeats")) {
+                    t.colorRepeats = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-colormode")) {
+                    t.colorMode = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-workers")) {
+                    workers = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-queue")) {
+                    queue = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException ex) {
+            System.out.println("usage: java -Djava.awt.headless=true TileServer [-port n]"
+                + " [-power n] [-julia x y] [-palette n] [-iterations n] [-colorrepeats n]"
+                + " [-colormode n] [-workers n] [-queue n]");
+            System.exit(2);
+        }
+        t.start(port, workers, queue);
+        System.out.println("serving http://localhost:" + t.getPort() + "/tile/{z}/{x}/{y}.png");
+    }
+
+    /**
+     * start picks up the settings and starts listening on the loopback
+     * address.
+     *
+     * @param port the port, 0 for any free one
+     * @param threads tiles rendered at once
+     * @param queue tiles that may wait for a worker before requests get 503
+     * @throws IOException if the port can't be had
+     */
+    public void start(int port, int threads, int queue) throws IOException
+    {
+        if (power < 2 || numIter < 1 || threads < 1 || queue < 1) {
+            throw new IllegalArgumentException("power, iterations, workers or queue out of range");
+        }
+        GradientManager gradients = new GradientManager();
+        if (palette < 1 || palette > gradients.getSize()) {
+            throw new IllegalArgumentException("palette 1-" + gradients.getSize());
+        }
+        colors = gradients.getGradient(palette);
+        // the Mandlebrot set sits left of 0, FractViewer centers it at -0.5
+        originX = new BigDecimal(isMandlebrot ? "-0.5" : "0");
+        originY = BigDecimal.ZERO;
+        settings = power + " " + isMandlebrot + " " + juliaX + " " + juliaY + " " + palette
+            + " " + numIter + " " + colorRepeats + " " + colorMode + " " + TILE_PIXELS;
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                         new ArrayBlockingQueue<Runnable>(queue));
+        handlers = Executors.newFixedThreadPool(HTTP_THREADS);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /**
+     * stop stops listening and lets the workers go.
+     */
+    public void stop()
+    {
+        server.stop(0);
+        workers.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void handle(HttpExchange ex) throws IOException
+    {
+        try {
+            String method = ex.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                ex.getResponseHeaders().set("Allow", "GET, HEAD");
+                send(ex, 405, "text/plain", "method not allowed\n".getBytes());
+                return;
+            }
+            String path = ex.getRequestURI().getPath();
+            if (path.equals("/stats")) {
+                send(ex, 200, "text/plain", (stats() + "\n").getBytes());
+                return;
+            }
+            String [] part = path.split("/");
+            if (part.length != 5 || !part[1].equals("tile") || !part[4].endsWith(".png")) {
+                send(ex, 404, "text/plain", "not found\n".getBytes());
+                return;
+            }
+            int z;
+            long x, y;
+            try {
+                z = Integer.parseInt(part[2]);
+                x = Long.parseLong(part[3]);
+                y = Long.parseLong(part[4].substring(0, part[4].length() - 4));
+            } catch (NumberFormatException e) {
+                send(ex, 400, "text/plain", "bad tile\n".getBytes());
+                return;
+            }
+            if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= (1L << z) || y >= (1L << z)) {
+                send(ex, 404, "text/plain", "no such tile\n".getBytes());
+                return;
+            }
+            requests.incrementAndGet();
+            String etag = etag(z, x, y);
+            Headers h = ex.getResponseHeaders();
+            h.set("ETag", etag);
+            h.set("Cache-Control", CACHE_CONTROL);
+            if (noneMatch(ex.getRequestHeaders().get("If-None-Match"), etag)) {
+                notModified.incrementAndGet();
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte [] png;
+            try {
+                png = tile(z, x, y);
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                h.remove("ETag");
+                h.set("Cache-Control", "no-store");
+                h.set("Retry-After", "1");
+                send(ex, 503, "text/plain", "busy\n".getBytes());
+                return;
+            } catch (Exception e) {
+                h.remove("ETag");
+                h.set("Cache-Control", "no-store");
+                send(ex, 500, "text/plain", (e + "\n").getBytes());
+                return;
+            }
+            send(ex, 200, "image/png", png);
+        } finally {
+            ex.close();
+        }
+    }
+
+    /**
+     * send sends a whole response, headers only for HEAD.
+     */
+    private void send(HttpExchange ex, int status, String type, byte [] body) throws IOException
+    {
+        ex.getResponseHeaders().set("Content-Type", type);
+        if (ex.getRequestMethod().equals("HEAD")) {
+            ex.getResponseHeaders().set("Content-Length", "" + body.length);
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        ex.sendResponseHeaders(status, body.length);
+        OutputStream out = ex.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * @return a strong ETag for the tile, the same for as long as the
+     * server's settings are
+     */
+    private String etag(int z, long x, long y)
+    {
+        CRC32 c = new CRC32();
+        c.update((settings + " " + z + " " + x + " " + y).getBytes());
+        return "\"" + Long.toHexString(c.getValue()) + "-" + z + "-" + x + "-" + y + "\"";
+    }
+
+    /**
+     * noneMatch tells if an If-None-Match matches the tile's tag: it is
+     * "*", or a comma separated list of tags one of which is the tag
+     * after a W/ is taken off (the weak comparison RFC 7232 asks for).
+     *
+     * @param values the header's values, null if it wasn't sent
+     * @param etag the tile's tag, quoted
+     * @return true if the client has the tile
+     */
+    protected static boolean noneMatch(List<String> values, String etag)
+    {
+        if (values == null) return false;
+        for (String value : values) {
+            int i = 0;
+            int n = value.length();
+            while (i < n) {
+                char c = value.charAt(i);
+                if (c == ',' || c == ' ' || c == '\t') {
+                    i++;
+                    continue;
+                }
+                if (c == '*') return true;
+                if (value.startsWith("W/", i)) i += 2;
+                if (i >= n || value.charAt(i) != '"') {
+                    // not a tag, skip to the next one
+                    while (i < n && value.charAt(i) != ',') i++;
+                    continue;
+                }
+                int end = value.indexOf('"', i + 1);
+                if (end < 0) return false; // unterminated, nothing after it counts
+                if (value.regionMatches(i, etag, 0, etag.length()) && end + 1 - i == etag.length()) {
+                    return true;
+                }
+                i = end + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * tile gives the PNG of a tile, starting its render on the workers
+     * unless one is already running, and waits for it.
+     *
+     * @throws RejectedExecutionException if the workers' queue is full
+     */
+    protected byte [] tile(final int z, final long x, final long y) throws Exception
+    {
+        final String key = z + "/" + x + "/" + y;
+        FutureTask<byte []> task = new FutureTask<byte []>(new Callable<byte []>() {
+            public byte [] call() throws Exception {
+                return renderTile(z, x, y);
+            }
+        }) {
+            protected void done() {
+                inFlight.remove(key, this);
+            }
+        };
+        FutureTask<byte []> running = inFlight.putIfAbsent(key, task);
+        if (running != null) {
+            shared.incrementAndGet();
+        } else {
+            running = task;
+            try {
+                workers.execute(task);
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(key, task);
+                throw e;
+            }
+        }
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * renderTile renders tile x, y of zoom level z to a PNG. The tile
+     * centers are worked out in BigDecimal, exactly, so deep levels
+     * line up.
+     */
+    protected byte [] renderTile(int z, long x, long y) throws IOException
+    {
+        renders.incrementAndGet();
+        BigDecimal span = new BigDecimal(4).divide(new BigDecimal(BigInteger.ONE.shiftLeft(z)));
+        BigDecimal half = new BigDecimal("0.5");
+        BigDecimal cx = originX.subtract(new BigDecimal(2))
+            .add(new BigDecimal(x).add(half).multiply(span));
+        BigDecimal cy = originY.add(new BigDecimal(2))
+            .subtract(new BigDecimal(y).add(half).multiply(span));
+        double zoom = Math.scalb(1.0, z);
+        Fractal f = new Fractal(TILE_PIXELS, TILE_PIXELS, cx.doubleValue(), cy.doubleValue(),
+            zoom, colors, numIter, colorRepeats, colorMode, power, isMandlebrot,
+            juliaX, juliaY, false, this);
+        f.redraw(TILE_PIXELS, TILE_PIXELS, cx, cy, numIter, zoom);
+        BufferedImage bf = new BufferedImage(TILE_PIXELS, TILE_PIXELS, BufferedImage.TYPE_INT_RGB);
+        bf.setRGB(0, 0, TILE_PIXELS, TILE_PIXELS, f.getPix(), 0, TILE_PIXELS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(bf, "png", out)) throw new IOException("no png encoder");
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the counters, one line
+     */
+    public String stats()
+    {
+        return requests.get() + " tile requests, " + renders.get() + " renders, "
+            + shared.get() + " shared, " + notModified.get() + " not modified, "
+            + rejected.get() + " rejected, " + workers.getActiveCount() + " rendering, "
+            + workers.getQueue().size() + " queued; " + Fractal.getTileCache();
+    }
+
+    public Object getFrame() {
+        return null;
+    }
+
+    public String getFrameTitle() {
+        return "TileServer";
+    }
+
+    public void notifyMe() {
+    }
+}
@@ -0,0 +1,471 @@
+/**
+ * TileStore keeps cached tiles on disk between sessions, beneath the
+ * in-memory TileCache. Tiles are appended as records to segment files
+ * of SEGMENT_BYTES that are memory mapped, so reading one back is a
+ * page-in. Each record carries a CRC32 of its contents and is checked
+ * on every read, a bad one is dropped and counted as corrupt.
+ *
+ * The index (key to segment and offset) lives only in memory. Opening
+ * the store rebuilds it from the record headers of every segment,
+ * oldest first, so the newest record of a key wins and whatever was
+ * appended before a crash is found again; a segment's walk stops at
+ * the first header that doesn't hold. Only the headers are read, the
+ * checksums are checked when a tile is read back.
+ *
+ * One process at a time: the store takes an exclusive lock on LOCK_NAME
+ * in its directory, and a second one fails to open rather than map the
+ * same segments.
+ *
+ * Once the segments would pass the byte budget the oldest one is
+ * deleted whole. A tile read from the oldest segment is written again
+ * at the end, so the tiles in use live on.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+public class TileStore
+{
+    public static final int SEGMENT_BYTES = 16 << 20; // size of a segment file
+    public static final long DEFAULT_BUDGET = 256L << 20; // 256 MB
+    public static final int RECORD_MAGIC = 0x54494c45; // "TILE"
+    public static final int HEADER_BYTES = 36; // magic, crc, length, key length, x, y, w, h, flags
+    public static final String LOCK_NAME = "lock";
+    public static final String OLD_INDEX_NAME = "index"; // written by earlier versions
+
+    private File dir;
+    private FileChannel lockChannel; // holds lock while the store is open
+    private FileLock lock; // this process's claim on dir
+    private int maxSegments; // segments kept, from the byte budget
+    private TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>(); // segment number to Segment, oldest first
+    private HashMap<String, Loc> index = new HashMap<String, Loc>(); // key to Loc
+    private Segment current; // the segment being appended to
+    private long hits, misses, corrupt, evictions;
+
+    /**
+     * Segment is one mapped segment file.
+     */
+    private static class Segment
+    {
+        long number;
+        MappedByteBuffer map;
+        int used; // bytes of records so far
+    }
+
+    /**
+     * Loc is where a tile's record starts.
+     */
+    private static class Loc
+    {
+        long segment;
+        int offset;
+
+        Loc(long segment, int offset)
+        {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Opens the store in dir, making it if need be, and rebuilds the
+     * index from the segments.
+     *
+     * @param dir the directory of the segment files
+     * @param budget the most bytes the segment files may take
+     * @throws IOException if the directory or a segment can't be used,
+     * or another process has the store open
+     */
+    public TileStore(File dir, long budget) throws IOException
+    {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't make tile store " + dir);
+        }
+        lock();
+        try {
+            maxSegments = (int)Math.max(2, Math.min(Integer.MAX_VALUE, budget / SEGMENT_BYTES));
+            new File(dir, OLD_INDEX_NAME).delete(); // the segments are the index now
+            File [] files = dir.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                String name = files[i].getName();
+                if (!name.startsWith("seg-") || !name.endsWith(".dat")) continue;
+                try {
+                    long n = Long.parseLong(name.substring(4, name.length() - 4));
+                    segments.put(Long.valueOf(n), map(n));
+                } catch (NumberFormatException ex) {
+                    // not one of ours
+                }
+            }
+            for (Segment s : segments.values()) recover(s);
+            if (segments.isEmpty()) {
+                current = newSegment(0);
+            } else {
+                current = segments.get(segments.lastKey());
+            }
+            evict();
+        } catch (IOException ex) {
+            unlock();
+            throw ex;
+        } catch (RuntimeException ex) {
+            unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * lock takes the store's directory for this process.
+     *
+     * @throws IOException if another process (or another TileStore in
+     * this one) has it
+     */
+    private void lock() throws IOException
+    {
+        lockChannel = FileChannel.open(new File(dir, LOCK_NAME).toPath(),
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("tile store " + dir + " is in use by another viewer");
+        }
+    }
+
+    /**
+     * unlock lets the directory go, for the next process.
+     */
+    private void unlock()
+    {
+        if (lockChannel == null) return;
+        try {
+            lockChannel.close(); // releases lock
+        } catch (IOException ex) {
+            // the lock goes with the process anyway
+        }
+        lockChannel = null;
+        lock = null;
+    }
+
+    /**
+     * @return the tile under key, null if the store doesn't have it or
+     * its record fails the checksum
+     */
+    public synchronized TileCache.Tile get(String key)
+    {
+        Loc loc = index.get(key);
+        TileCache.Tile t = loc != null ? read(loc, key) : null;
+        if (t == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (evictedNext(loc)) put(key, t); // write it again at the end
+        return t;
+    }
+
+    /**
+     * put writes a tile under key unless the store already has a tile
+     * there holding all of it (outside the oldest segment).
+     */
+    public synchronized void put(String key, TileCache.Tile t)
+    {
+        if (lock == null) return; // closed
+        Loc loc = index.get(key);
+        if (loc != null && !evictedNext(loc)) {
+            ByteBuffer b = buffer(loc);
+            if (b != null && b.getInt(loc.offset) == RECORD_MAGIC
+                && covers(b, loc.offset, t.x, t.y, t.w, t.h)) return;
+        }
+        try {
+            append(key, t);
+        } catch (RuntimeException ex) {
+            // full disk or such, the store is only a cache
+            System.out.println("TileStore: " + ex);
+        }
+    }
+
+    /**
+     * @return true if loc is in the segment the next eviction deletes
+     */
+    private boolean evictedNext(Loc loc)
+    {
+        return loc.segment == segments.firstKey().longValue()
+            && loc.segment != current.number;
+    }
+
+    /**
+     * sync forces the segments to disk.
+     */
+    public synchronized void sync()
+    {
+        for (Segment s : segments.values()) s.map.force();
+    }
+
+    /**
+     * close syncs the store and lets its directory go, puts after are
+     * dropped.
+     */
+    public synchronized void close()
+    {
+        sync();
+        unlock();
+    }
+
+    /**
+     * append writes a record for the tile at the end of the current
+     * segment, starting a new segment (and evicting) if it's full.
+     */
+    private void append(String key, TileCache.Tile t)
+    {
+        byte [] k = key.getBytes();
+        boolean smooth = t.smooth != null;
+        int length = HEADER_BYTES + k.length + 4*t.data.length + (smooth ? 4*t.smooth.length : 0);
+        if (length > SEGMENT_BYTES) return;
+        if (current.used + length > SEGMENT_BYTES) {
+            try {
+                current = newSegment(current.number + 1);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex.toString());
+            }
+            evict();
+        }
+        ByteBuffer b = current.map.duplicate();
+        int offset = current.used;
+        b.position(offset + 8);
+        b.putInt(length);
+        b.putInt(k.length);
+        b.putInt(t.x);
+        b.putInt(t.y);
+        b.putInt(t.w);
+        b.putInt(t.h);
+        b.putInt(smooth ? 1 : 0);
+        b.put(k);
+        b.asIntBuffer().put(t.data);
+        b.position(b.position() + 4*t.data.length);
+        if (smooth) b.asFloatBuffer().put(t.smooth);
+        b.putInt(offset + 4, crc(b, offset, length));
+        b.putInt(offset, RECORD_MAGIC); // last, a torn record has no magic
+        current.used += length;
+        index.put(key, new Loc(current.number, offset));
+    }
+
+    /**
+     * @return the tile of the record at loc, null if the record is
+     * bad (counted as corrupt and dropped) or has another key
+     */
+    private TileCache.Tile read(Loc loc, String key)
+    {
+        ByteBuffer b = buffer(loc);
+        int offset = loc.offset;
+        int length = b != null ? valid(b, offset) : 0;
+        if (length <= 0) {
+            corrupt++;
+            index.remove(key);
+            return null;
+        }
+        int keyLength = b.getInt(offset + 12);
+        byte [] k = new byte [keyLength];
+        ByteBuffer r = b.duplicate();
+        r.position(offset + HEADER_BYTES);
+        r.get(k);
+        if (!key.equals(new String(k))) return null;
+        int x = b.getInt(offset + 16);
+        int y = b.getInt(offset + 20);
+        int w = b.getInt(offset + 24);
+        int h = b.getInt(offset + 28);
+        int [] data = new int [w * h];
+        r.asIntBuffer().get(data);
+        float [] smooth = null;
+        if (b.getInt(offset + 32) != 0) {
+            r.position(r.position() + 4*data.length);
+            smooth = new float [w * h];
+            r.asFloatBuffer().get(smooth);
+        }
+        return new TileCache.Tile(x, y, w, h, data, smooth, key);
+    }
+
+    /**
+     * @return the length of the record at offset if its magic, length
+     * and checksum all hold, minus the length if only the checksum is
+     * off (the record can be stepped over), else 0
+     */
+    private int valid(ByteBuffer b, int offset)
+    {
+        int length = header(b, offset);
+        if (length == 0) return 0;
+        if (crc(b, offset, length) != b.getInt(offset + 4)) return -length;
+        return length;
+    }
+
+    /**
+     * @return the length of the record at offset if its magic and
+     * lengths hold, else 0; the checksum isn't looked at
+     */
+    private static int header(ByteBuffer b, int offset)
+    {
+        if (offset < 0 || offset + HEADER_BYTES > SEGMENT_BYTES) return 0;
+        if (b.getInt(offset) != RECORD_MAGIC) return 0;
+        int length = b.getInt(offset + 8);
+        if (length < HEADER_BYTES || offset + length > SEGMENT_BYTES) return 0;
+        int keyLength = b.getInt(offset + 12);
+        int w = b.getInt(offset + 24);
+        int h = b.getInt(offset + 28);
+        if (keyLength < 0 || w < 0 || h < 0) return 0;
+        long expect = HEADER_BYTES + keyLength + 4L*w*h*(b.getInt(offset + 32) != 0 ? 2 : 1);
+        return expect == length ? length : 0;
+    }
+
+    /**
+     * @return the CRC32 of the record at offset past its magic and crc
+     */
+    private static int crc(ByteBuffer b, int offset, int length)
+    {
+        CRC32 c = new CRC32();
+        ByteBuffer r = b.duplicate();
+        r.position(offset + 8);
+        r.limit(offset + length);
+        c.update(r);
+        return (int) c.getValue();
+    }
+
+    /**
+     * @return true if the record at offset holds all of the w by h
+     * block x, y into its tile
+     */
+    private static boolean covers(ByteBuffer b, int offset, int x, int y, int w, int h)
+    {
+        int rx = b.getInt(offset + 16);
+        int ry = b.getInt(offset + 20);
+        return rx <= x && ry <= y && rx + b.getInt(offset + 24) >= x + w
+            && ry + b.getInt(offset + 28) >= y + h;
+    }
+
+    /**
+     * @return the mapped segment of loc, null if it's gone
+     */
+    private ByteBuffer buffer(Loc loc)
+    {
+        Segment s = segments.get(Long.valueOf(loc.segment));
+        return s != null ? s.map : null;
+    }
+
+    /**
+     * recover walks the record headers of a segment into the index, up
+     * to the first that isn't a record at all, and appends go after
+     * the last one.
+     */
+    private void recover(Segment s)
+    {
+        int offset = 0;
+        int length;
+        while ((length = header(s.map, offset)) != 0) {
+            int keyLength = s.map.getInt(offset + 12);
+            byte [] k = new byte [keyLength];
+            ByteBuffer r = s.map.duplicate();
+            r.position(offset + HEADER_BYTES);
+            r.get(k);
+            index.put(new String(k), new Loc(s.number, offset));
+            offset += length;
+        }
+        s.used = offset;
+    }
+
+    /**
+     * evict deletes the oldest segments until there are maxSegments,
+     * with their index entries.
+     */
+    private void evict()
+    {
+        while (segments.size() > maxSegments) {
+            Long oldest = segments.firstKey();
+            segments.remove(oldest);
+            Iterator<Loc> it = index.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().segment == oldest.longValue()) {
+                    it.remove();
+                    evictions++;
+                }
+            }
+            segmentFile(oldest.longValue()).delete();
+        }
+    }
+
+    /**
+     * @return a new empty segment numbered n, mapped and added to the store
+     */
+    private Segment newSegment(long n) throws IOException
+    {
+        File f = segmentFile(n);
+        f.delete(); // a leftover not in segments, start it clean
+        Segment s = map(n);
+        s.map.putInt(0, 0); // no magic, no records
+        segments.put(Long.valueOf(n), s);
+        return s;
+    }
+
+    /**
+     * @return segment n mapped from its file, made if need be
+     */
+    private Segment map(long n) throws IOException
+    {
+        FileChannel ch = FileChannel.open(segmentFile(n).toPath(), StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            Segment s = new Segment();
+            s.number = n;
+            s.map = ch.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+            return s;
+        } finally {
+            ch.close(); // the mapping stays
+        }
+    }
+
+    private File segmentFile(long n)
+    {
+        return new File(dir, "seg-" + n + ".dat");
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return bytes of records in the segments
+     */
+    public synchronized long getBytes() {
+        long bytes = 0;
+        for (Segment s : segments.values()) bytes += s.used;
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getCorrupt() {
+        return corrupt;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public String toString()
+    {
+        return "TileStore " + size() + " tiles, " + getBytes() + " bytes in "
+            + dir + ", " + getHits() + " hits, " + getMisses() + " misses, "
+            + getCorrupt() + " corrupt, " + getEvictions() + " evictions";
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * ImageBenchmark is the workload of bench.ImageBench: Fractal.generateImage
+ * of one of a fixed set of scenes, with one pixelColorScheme, SpeedPass
+ * off or on. The iterations a run stands for are those of the whole
+ * frame, counted from a full scan of the scene with the iteration based
+ * scheme, so a mode that skips pixels (SpeedPass) or orbits (the
+ * periodicity check) shows up as a higher rate for the same picture.
+ * The tile cache is off, every run renders.
+ */
+
+import java.util.*;
+
+public class ImageBenchmark implements FractalViewer, bench.Workload
+{
+    public static final String [] SCHEMES = {
+        "iteration", "magnitude", "cos", "sin", "magShiftAngle", "iterShiftAngle",
+        "angle", "magShiftCos", "magShiftSin", "iterShiftCos", "iterShiftSin" };
+
+    // name, center x, center y, zoom, power, mandlebrot (1) or julia (0)
+    public static final Object [][] SCENES = {
+        { "default",   -0.5,   0.0,    1.0,  2, 1 },
+        { "seahorse",  -0.743643887037, 0.131825904205, 1e5, 2, 1 },
+        { "deepJulia", -0.192784239766795, -0.28047885457383, 1e8, 2, 0 },
+        { "power3",     0.0,   0.0,    1.0,  3, 1 },
+        { "power8",     0.0,   0.0,    1.0,  8, 1 },
+        { "power64",    0.0,   0.0,    1.0, 64, 1 },
+    };
+    public static final double JULIA_X = -0.8; // julia c of the julia scenes
+    public static final double JULIA_Y = 0.156;
+
+    private Fractal f; // the case, rendered by run
+    private long pixels; // of the frame
+    private long frameIters; // of the full scan of the frame
+
+    /**
+     * @param params scene name, scheme name, speed pass "on" or "off",
+     * width, height, iterations
+     */
+    public void setUp(String [] params)
+    {
+        Object [] scene = (Object []) find(SCENES, params[0]);
+        int scheme = Arrays.asList(SCHEMES).indexOf(params[1]);
+        if (scheme < 0) throw new IllegalArgumentException("no scheme " + params[1]);
+        boolean speedPass = params[2].equals("on");
+        int width = Integer.parseInt(params[3]);
+        int height = Integer.parseInt(params[4]);
+        int numIter = Integer.parseInt(params[5]);
+        f = make(scene, width, height, numIter, speedPass);
+        f.pixelColorScheme = scheme;
+        pixels = width * (long)height;
+        // the full scan's counts are the frame's work
+        Fractal full = make(scene, width, height, numIter, false);
+        full.pixelColorScheme = Fractal.PIXEL_ITERATION_BASED;
+        full.generateImage();
+        int [] data = full.iterationData;
+        frameIters = 0;
+        for (int i = 0; i < data.length; i++) {
+            frameIters += Math.min(data[i], numIter);
+        }
+    }
+
+    private Fractal make(Object [] scene, int width, int height, int numIter, boolean speedPass)
+    {
+        Fractal fr = new Fractal(width, height,
+            ((Double)scene[1]).doubleValue(), ((Double)scene[2]).doubleValue(),
+            ((Double)scene[3]).doubleValue(), new RainbowGradient().getGradient(), numIter, 1, 1,
+            ((Integer)scene[4]).intValue(), ((Integer)scene[5]).intValue() == 1,
+            JULIA_X, JULIA_Y, speedPass, this);
+        fr.setTileCache(false);
+        return fr;
+    }
+
+    /**
+     * @return the row of table whose first entry is name
+     */
+    static Object find(Object [][] table, String name)
+    {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i][0].equals(name)) return table[i];
+        }
+        throw new IllegalArgumentException("no scene " + name);
+    }
+
+    public Object run()
+    {
+        f.generateImage();
+        return f.getPix();
+    }
+
+    public long getPixels() {
+        return pixels;
+    }
+
+    public long getIterations() {
+        return frameIters;
+    }
+
+    public Object getFrame() {
+        return null;
+    }
+
+    public String getFrameTitle() {
+        return "ImageBenchmark";
+    }
+
+    public void notifyMe() {
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * KernelBenchmark is the workload of bench.KernelBench and
+ * bench.VectorBench: one escape-time kernel iterating a grid of
+ * Mandlebrot points. The kernel is the original generic multiply loop,
+ * the scalar kernel Fractal picks for the power, or the Vector API row
+ * kernel, which needs --add-modules jdk.incubator.vector.
+ */
+
+public class KernelBenchmark implements bench.Workload
+{
+    public static final int MAX_VECTOR_POWER = 8;
+
+    private EscapeKernel kernel; // null for the vector kernel
+    private RowKernel vector;
+    private int power, size, numIter;
+    private long iters; // of one run over the grid
+
+    /**
+     * @param params kernel ("generic", "scalar" or "vector"), power,
+     * grid size (size x size points), iterations
+     */
+    public void setUp(String [] params)
+    {
+        power = Integer.parseInt(params[1]);
+        size = Integer.parseInt(params[2]);
+        numIter = Integer.parseInt(params[3]);
+        if (params[0].equals("generic")) {
+            kernel = new EscapeKernel.Generic(power);
+        } else if (params[0].equals("scalar")) {
+            kernel = EscapeKernel.forPower(power);
+        } else if (params[0].equals("vector")) {
+            vector = Fractal.getVectorKernel();
+            if (vector == null) {
+                throw new IllegalStateException("no vector kernel, run with"
+                                                + " --add-modules jdk.incubator.vector");
+            }
+            if (power > MAX_VECTOR_POWER) {
+                throw new IllegalArgumentException("vector kernel powers go to " + MAX_VECTOR_POWER);
+            }
+            System.out.println(vector.getDescription());
+        } else {
+            throw new IllegalArgumentException("no kernel " + params[0]);
+        }
+        iters = run(EscapeKernel.forPower(power), size, numIter);
+    }
+
+    public Object run()
+    {
+        return Long.valueOf(kernel != null ? run(kernel, size, numIter)
+                                           : runRows(vector, power, size, numIter));
+    }
+
+    public long getPixels() {
+        return size * (long)size;
+    }
+
+    public long getIterations() {
+        return iters;
+    }
+
+    /**
+     * run iterates every point of the grid over the square
+     * (-1.5,-1.5)-(1.5,1.5) of the complex plane.
+     *
+     * @return total iterations done
+     */
+    public static long run(EscapeKernel kernel, int size, int numIter)
+    {
+        Fractal.Orbit o = new Fractal.Orbit();
+        long total = 0;
+        double step = 3.0/size;
+        for (int y = 0; y < size; y++) {
+            double cy = 1.5 - y*step;
+            for (int x = 0; x < size; x++) {
+                total += kernel.iterate(0, 0, x*step - 1.5, cy, numIter, o);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * runRows iterates the same grid as run, Fractal.TILE_SIZE
+     * points at a time through a RowKernel.
+     *
+     * @return total iterations done
+     */
+    public static long runRows(RowKernel rk, int power, int size, int numIter)
+    {
+        int n = Fractal.TILE_SIZE;
+        double [] zx = new double [n];
+        double [] zy = new double [n];
+        double [] cx = new double [n];
+        double [] cy = new double [n];
+        boolean [] done = new boolean [n];
+        int [] iters = new int [n];
+        long total = 0;
+        double step = 3.0/size;
+        for (int y = 0; y < size; y++) {
+            for (int x0 = 0; x0 < size; x0 += n) {
+                int count = Math.min(n, size - x0);
+                for (int k = 0; k < count; k++) {
+                    zx[k] = 0;
+                    zy[k] = 0;
+                    cx[k] = (x0 + k)*step - 1.5;
+                    cy[k] = 1.5 - y*step;
+                }
+                rk.iterateRow(zx, zy, cx, cy, count, power, numIter, done, iters);
+                for (int k = 0; k < count; k++) total += iters[k];
+            }
+        }
+        return total;
+    }
+}
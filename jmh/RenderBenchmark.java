@@ -0,0 +1,98 @@
+/**
+ * RenderBenchmark is the workload of bench.RenderBench: Fractal.generateImage
+ * of one of a few standard scenes in one render mode. Setting a case up
+ * also renders the full scan of its scene and prints how many pixels
+ * the mode iterated and how many came out different from the full
+ * scan. Distance fill is a guess, its wrong pixels are expected.
+ * The tile cache is off, every run renders.
+ */
+
+import java.util.*;
+
+public class RenderBenchmark implements FractalViewer, bench.Workload
+{
+    public static final String [] MODES = { "full", "subdivision", "trace", "distance" };
+
+    // name, center x, center y, zoom, power, mandlebrot (1) or julia (0)
+    public static final Object [][] SCENES = {
+        { "whole",     -0.5,   0.0,    1.0,  2, 1 },
+        { "seahorse",  -0.743643887037, 0.131825904205, 1e5, 2, 1 },
+        { "elephants",  0.2925, 0.0149, 200.0, 2, 1 },
+        { "cubic",      0.0,   0.0,    1.0,  3, 1 },
+        { "dendrite",   0.0,   0.0,    1.0,  2, 0 },
+    };
+
+    private Fractal f; // the case, rendered by run
+    private long pixels; // of the frame
+
+    /**
+     * @param params scene name, mode name, width, height, iterations
+     */
+    public void setUp(String [] params)
+    {
+        Object [] scene = (Object []) ImageBenchmark.find(SCENES, params[0]);
+        int m = Arrays.asList(MODES).indexOf(params[1]);
+        if (m < 0) throw new IllegalArgumentException("no mode " + params[1]);
+        int width = Integer.parseInt(params[2]);
+        int height = Integer.parseInt(params[3]);
+        int numIter = Integer.parseInt(params[4]);
+        pixels = width * (long)height;
+        f = make(scene, width, height, numIter, m);
+        f.generateImage();
+        int [] data = f.iterationData;
+        long iterated = data.length;
+        int wrong = 0;
+        if (m > 0) {
+            Fractal full = make(scene, width, height, numIter, 0);
+            full.generateImage();
+            int [] reference = full.iterationData;
+            iterated = m == 3 ? data.length - f.getDistanceSkippedPixels()
+                              : f.getComputedPixels();
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != reference[i]) wrong++;
+            }
+        }
+        System.out.println(params[0] + " " + params[1] + ": "
+            + Math.round(iterated*1000.0/data.length)/10.0 + "% iterated, "
+            + wrong + " wrong pixels");
+    }
+
+    private Fractal make(Object [] scene, int width, int height, int numIter, int m)
+    {
+        Fractal fr = new Fractal(width, height,
+            ((Double)scene[1]).doubleValue(), ((Double)scene[2]).doubleValue(),
+            ((Double)scene[3]).doubleValue(), new RainbowGradient().getGradient(), numIter, 1, 1,
+            ((Integer)scene[4]).intValue(), ((Integer)scene[5]).intValue() == 1,
+            0.0, 1.0, false, this); // julia c = i
+        fr.setTileCache(false);
+        fr.setSubdivision(m == 1);
+        fr.setBoundaryTrace(m == 2);
+        fr.setDistanceFill(m == 3);
+        return fr;
+    }
+
+    public Object run()
+    {
+        f.generateImage();
+        return f.getPix();
+    }
+
+    public long getPixels() {
+        return pixels;
+    }
+
+    public long getIterations() {
+        return 0; // not counted, the modes differ in what they skip
+    }
+
+    public Object getFrame() {
+        return null;
+    }
+
+    public String getFrameTitle() {
+        return "RenderBenchmark";
+    }
+
+    public void notifyMe() {
+    }
+}
@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * ImageBench times Fractal.generateImage over every scene, every
+ * pixelColorScheme, and SpeedPass off and on (ImageBenchmark is the
+ * workload). Next to the frames per second it reports megapixels and
+ * iterations per second, the iterations being those of the full scan
+ * of the frame. Pick cases with -p, e.g. -p scene=seahorse -p speedPass=on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageBench
+{
+    @Param({ "default", "seahorse", "deepJulia", "power3", "power8", "power64" })
+    public String scene;
+
+    @Param({ "iteration", "magnitude", "cos", "sin", "magShiftAngle", "iterShiftAngle",
+             "angle", "magShiftCos", "magShiftSin", "iterShiftCos", "iterShiftSin" })
+    public String scheme;
+
+    @Param({ "off", "on" })
+    public String speedPass;
+
+    @Param("320")
+    public int width;
+
+    @Param("240")
+    public int height;
+
+    @Param("1000")
+    public int iterations;
+
+    private Workload work;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        work = Workload.load("ImageBenchmark", scene, scheme, speedPass,
+                             "" + width, "" + height, "" + iterations);
+    }
+
+    @Benchmark
+    public void generateImage(Work counted, Blackhole bh)
+    {
+        bh.consume(work.run());
+        counted.add(work);
+    }
+}
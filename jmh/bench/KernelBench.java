@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * KernelBench times the escape-time kernel Fractal picks for each
+ * power against the original generic multiply loop, over the same
+ * grid of Mandlebrot points (KernelBenchmark is the workload). The
+ * iterations counter is the work of one pass over the grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class KernelBench
+{
+    @Param({ "2", "3", "4", "5", "8", "16", "32", "64", "100" })
+    public int power;
+
+    @Param({ "generic", "scalar" })
+    public String kernel;
+
+    @Param("256")
+    public int size;
+
+    @Param("256")
+    public int iterations;
+
+    private Workload work;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        work = Workload.load("KernelBenchmark", kernel, "" + power, "" + size, "" + iterations);
+    }
+
+    @Benchmark
+    public void iterateGrid(Work counted, Blackhole bh)
+    {
+        bh.consume(work.run());
+        counted.add(work);
+    }
+}
@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * RenderBench times the render modes of Fractal against the full scan
+ * on a few standard scenes (RenderBenchmark is the workload). When a
+ * case is set up it prints how many pixels the mode iterated and how
+ * many came out different from the full scan; distance fill is a
+ * guess, its wrong pixels are expected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBench
+{
+    @Param({ "whole", "seahorse", "elephants", "cubic", "dendrite" })
+    public String scene;
+
+    @Param({ "full", "subdivision", "trace", "distance" })
+    public String mode;
+
+    @Param("640")
+    public int width;
+
+    @Param("480")
+    public int height;
+
+    @Param("1000")
+    public int iterations;
+
+    private Workload work;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        work = Workload.load("RenderBenchmark", scene, mode,
+                             "" + width, "" + height, "" + iterations);
+    }
+
+    @Benchmark
+    public Object generateImage()
+    {
+        return work.run();
+    }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * VectorBench times the Vector API row kernel against the scalar
+ * kernels for powers 2 to 8, over the grid KernelBench uses. Its forks
+ * run with the incubator module, VectorKernel has to be on the class
+ * path (the Maven build compiles it).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true",
+                                   "--add-modules=jdk.incubator.vector" })
+public class VectorBench
+{
+    @Param({ "2", "3", "4", "5", "6", "7", "8" })
+    public int power;
+
+    @Param({ "scalar", "vector" })
+    public String kernel;
+
+    @Param("256")
+    public int size;
+
+    @Param("256")
+    public int iterations;
+
+    private Workload work;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        work = Workload.load("KernelBenchmark", kernel, "" + power, "" + size, "" + iterations);
+    }
+
+    @Benchmark
+    public void iterateGrid(Work counted, Blackhole bh)
+    {
+        bh.consume(work.run());
+        counted.add(work);
+    }
+}
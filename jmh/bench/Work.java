@@ -0,0 +1,34 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Work counts the megapixels and iterations the runs of a benchmark
+ * stood for, so JMH reports them per second next to the runs per
+ * second. JMH names a counter's column after the field and divides it
+ * by the time, so the field carries the unit: megapixels/s reads like
+ * the MPix/s the viewer's render stats print.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Work
+{
+    public double megapixels;
+    public long iterations;
+
+    @Setup(Level.Iteration)
+    public void clear()
+    {
+        megapixels = 0;
+        iterations = 0;
+    }
+
+    /**
+     * add counts one run of w.
+     */
+    public void add(Workload w)
+    {
+        megapixels += w.getPixels() / 1e6;
+        iterations += w.getIterations();
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+/**
+ * Workload is the part of a benchmark that drives the fractal classes.
+ * Those are in the default package, which a JMH benchmark (it has to be
+ * in a package) can't name, so each benchmark here loads its workload
+ * by class name, the way Fractal loads VectorKernel, and only talks to
+ * it through this interface.
+ */
+public interface Workload
+{
+    /**
+     * setUp makes the case the parameters name ready to run.
+     *
+     * @throws IllegalArgumentException if a parameter names nothing
+     * @throws IllegalStateException if the case can't run in this JVM
+     */
+    public void setUp(String [] params);
+
+    /**
+     * run does one operation of the benchmark.
+     *
+     * @return what it made, for a Blackhole
+     */
+    public Object run();
+
+    /**
+     * @return pixels (or points) one run covers
+     */
+    public long getPixels();
+
+    /**
+     * @return escape-time iterations one run stands for
+     */
+    public long getIterations();
+
+    /**
+     * load makes the workload of the named class and sets it up.
+     *
+     * @param className a default package class implementing Workload
+     * @param params the case, as the workload's setUp takes it
+     */
+    public static Workload load(String className, String... params) throws Exception
+    {
+        Workload w = (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+        w.setUp(params);
+        return w;
+    }
+}
@@ -0,0 +1,137 @@
+import jdk.incubator.vector.*;
+
+/**
+ * VectorKernel iterates a lane-width batch of pixels at a time with
+ * the incubating Java Vector API (AVX2/AVX-512 on x86). Lanes that
+ * escape are masked off and keep their final z, the batch ends when
+ * every lane has escaped or hit numIter. Powers up to 4 multiply z in
+ * one at a time and higher powers use repeated squaring (unrolled up
+ * to z^8), in the same order as EscapeKernel, so the results match the
+ * scalar kernels.
+ * It sits in its own source directory so the rest of the tree builds
+ * without the incubator module; it is compiled on its own with
+ * --add-modules jdk.incubator.vector (see README.md), and needs that
+ * flag at run time too. Fractal falls back to the scalar kernels when
+ * the class or the module is missing.
+ */
+
+public class VectorKernel implements RowKernel
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    public void iterateRow(double [] zxs, double [] zys, double [] cxs, double [] cys,
+                           int count, int power, int numIter,
+                           boolean [] done, int [] iters)
+    {
+        int lanes = SPECIES.length();
+        for (int k = 0; k < count; k += lanes) {
+            VectorMask<Double> active = SPECIES.indexInRange(k, count)
+                .andNot(VectorMask.fromArray(SPECIES, done, k));
+            if (!active.anyTrue()) continue;
+            DoubleVector cx = DoubleVector.fromArray(SPECIES, cxs, k);
+            DoubleVector cy = DoubleVector.fromArray(SPECIES, cys, k);
+            DoubleVector zx = DoubleVector.fromArray(SPECIES, zxs, k);
+            DoubleVector zy = DoubleVector.fromArray(SPECIES, zys, k);
+            DoubleVector n = DoubleVector.zero(SPECIES); // iterations before escape
+
+            for (int i = 0; i < numIter; i++) {
+                DoubleVector rx; // z^power
+                DoubleVector ry;
+                DoubleVector sx; // z^(2^k)
+                DoubleVector sy;
+                DoubleVector t;
+                switch (power) {
+                    case 5: // z * z^4
+                        t = zx.mul(zx).sub(zy.mul(zy));
+                        sy = zx.mul(zy).add(zy.mul(zx));
+                        sx = t.mul(t).sub(sy.mul(sy));
+                        sy = t.mul(sy).add(sy.mul(t));
+                        rx = zx.mul(sx).sub(zy.mul(sy));
+                        ry = zx.mul(sy).add(zy.mul(sx));
+                        break;
+                    case 6: // z^2 * z^4
+                        sx = zx.mul(zx).sub(zy.mul(zy));
+                        sy = zx.mul(zy).add(zy.mul(zx));
+                        t = sx.mul(sx).sub(sy.mul(sy));
+                        ry = sx.mul(sy).add(sy.mul(sx));
+                        rx = sx.mul(t).sub(sy.mul(ry));
+                        ry = sx.mul(ry).add(sy.mul(t));
+                        break;
+                    case 7: // z * z^2 * z^4
+                        sx = zx.mul(zx).sub(zy.mul(zy));
+                        sy = zx.mul(zy).add(zy.mul(zx));
+                        rx = zx.mul(sx).sub(zy.mul(sy));
+                        ry = zx.mul(sy).add(zy.mul(sx));
+                        t = sx.mul(sx).sub(sy.mul(sy));
+                        sy = sx.mul(sy).add(sy.mul(sx));
+                        sx = t;
+                        t = rx.mul(sx).sub(ry.mul(sy));
+                        ry = rx.mul(sy).add(ry.mul(sx));
+                        rx = t;
+                        break;
+                    case 8: // ((z^2)^2)^2
+                        sx = zx.mul(zx).sub(zy.mul(zy));
+                        sy = zx.mul(zy).add(zy.mul(zx));
+                        t = sx.mul(sx).sub(sy.mul(sy));
+                        sy = sx.mul(sy).add(sy.mul(sx));
+                        rx = t.mul(t).sub(sy.mul(sy));
+                        ry = t.mul(sy).add(sy.mul(t));
+                        break;
+                    default:
+                        if (power <= 4) {
+                            rx = zx;
+                            ry = zy;
+                            for (int j = 1; j < power; j++) {
+                                t = rx.mul(zx).sub(ry.mul(zy));
+                                ry = rx.mul(zy).add(ry.mul(zx));
+                                rx = t;
+                            }
+                            break;
+                        }
+                        sx = zx;
+                        sy = zy;
+                        int e = power;
+                        // square up to the lowest set bit, it starts the product
+                        while ((e & 1) == 0) {
+                            e >>>= 1;
+                            t = sx.mul(sx).sub(sy.mul(sy));
+                            sy = sx.mul(sy).add(sy.mul(sx));
+                            sx = t;
+                        }
+                        rx = sx;
+                        ry = sy;
+                        e >>>= 1;
+                        while (e != 0) {
+                            t = sx.mul(sx).sub(sy.mul(sy));
+                            sy = sx.mul(sy).add(sy.mul(sx));
+                            sx = t;
+                            if ((e & 1) != 0) {
+                                t = rx.mul(sx).sub(ry.mul(sy));
+                                ry = rx.mul(sy).add(ry.mul(sx));
+                                rx = t;
+                            }
+                            e >>>= 1;
+                        }
+                }
+                // escaped lanes keep the z they escaped with
+                zx = zx.blend(rx.add(cx), active);
+                zy = zy.blend(ry.add(cy), active);
+                VectorMask<Double> escaped = zx.mul(zx).add(zy.mul(zy))
+                    .compare(VectorOperators.GT, 4.0).and(active);
+                active = active.andNot(escaped);
+                if (!active.anyTrue()) break;
+                n = n.add(1.0, active);
+            }
+            zx.intoArray(zxs, k);
+            zy.intoArray(zys, k);
+            double [] counts = n.toArray();
+            for (int l = 0; l < lanes && k + l < count; l++) {
+                if (!done[k + l]) iters[k + l] = (int) counts[l];
+            }
+        }
+    }
+
+    public String getDescription() {
+        return "VectorKernel: " + SPECIES.length() + " x double lanes";
+    }
+}